@@ -0,0 +1,265 @@
+package lox;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the two AST representations on the same generated
+ * programs: the Expr/Stmt records built by Parser and run by
+ * Interpreter, and the AstArena built by Parser.parseArena() and run by
+ * ArenaInterpreter. For each, records the time to parse, the time
+ * to interpret, and the heap retained by the AST itself (not
+ * counting the tokens, which both keep).
+ *
+ * Each representation runs on two corpora:
+ *   GENERATED          ScriptGenerator programs, whose number literals
+ *                      are all below 100, so most of them repeat
+ *   DISTINCT_LITERALS  "print 3.5 + 1000003;" and so on, where every
+ *                      literal is different
+ *
+ * The retained heap is measured in a fresh JVM for each program:
+ * in a JVM that has already parsed other programs, a stale slot on
+ * the thread's stack can keep an earlier AST alive for a while,
+ * which throws the measurement off by the size of that AST.
+ *
+ * Usage: java -XX:+UseSerialGC -Xms2g -Xmx2g lox.ArenaBenchmark [csv-file]
+ * Writes one CSV row per representation and size (to stdout if no
+ * file is given), and a summary of the arena/tree ratios to stderr.
+ */
+public class ArenaBenchmark {
+    enum Representation { TREE, ARENA }
+
+    enum Corpus {
+        GENERATED {
+            // the same shape as StressHarness's "statements" scenario
+            String generate(int statements) {
+                return new ScriptGenerator(new ScriptGenerator.Shape(statements, 4, 2, 0.5, 64, 8), SEED).generate();
+            }
+        },
+        DISTINCT_LITERALS {
+            String generate(int statements) {
+                StringBuilder out = new StringBuilder();
+                for (int i = 0; i < statements; i++) {
+                    out.append("print ").append(i).append(".5 + ").append(i + 1_000_000).append(";\n");
+                }
+                return out.toString();
+            }
+        };
+
+        abstract String generate(int statements);
+    }
+
+    private static final int SMALLEST = 1 << 13; // statements; each later size doubles it
+    private static final int STEPS = 5;
+    private static final long SEED = 251;
+    private static final int WARM_UPS = 5;       // runs at the smallest size, not recorded
+    private static final int REPETITIONS = 5;    // keep the fastest of these
+    private static final long STACK_SIZE = 1L << 29;
+
+    // first argument of the child JVM that measures the retained heap
+    private static final String RETAINED_HEAP = "--retained-heap";
+
+    // indexes into a sample
+    private static final int PARSE_NANOS = 0;
+    private static final int INTERPRET_NANOS = 1;
+    private static final int RETAINED_BYTES = 2;
+    private static final int NODES = 3;
+
+    private static final List<MemoryPoolMXBean> HEAP_POOLS =
+            ManagementFactory.getMemoryPoolMXBeans().stream()
+                    .filter(pool -> pool.getType() == MemoryType.HEAP)
+                    .toList();
+
+    private static Object reachable; // what is live while the heap is measured
+
+    public static void main(String[] args) throws FileNotFoundException, InterruptedException {
+        if (args.length == 4 && args[0].equals(RETAINED_HEAP)) { // we are the child JVM
+            Representation representation = Representation.valueOf(args[1]);
+            Corpus corpus = Corpus.valueOf(args[2]);
+            int size = Integer.parseInt(args[3]);
+            Thread thread = new Thread(null,
+                    () -> System.out.println(retainedBytes(representation, corpus.generate(size))),
+                    "retained-heap", STACK_SIZE);
+            thread.start();
+            thread.join();
+            return;
+        }
+
+        PrintStream csv = args.length > 0 ? new PrintStream(args[0]) : System.out;
+
+        // both parsers and evaluators recurse once per nesting level
+        Thread runner = new Thread(null, () -> runAll(csv), "benchmark", STACK_SIZE);
+        runner.start();
+        runner.join();
+        csv.flush();
+    }
+
+    private static void runAll(PrintStream csv) {
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // discard program output
+
+        try {
+            for (int i = 0; i < WARM_UPS; i++) { // warm up the JIT
+                for (Corpus corpus : Corpus.values()) {
+                    for (Representation representation : Representation.values()) {
+                        measure(representation, corpus.generate(SMALLEST));
+                    }
+                }
+            }
+
+            csv.println("corpus,representation,statements,parse_nanos,interpret_nanos,retained_bytes,nodes");
+            for (Corpus corpus : Corpus.values()) {
+                for (int step = 0; step < STEPS; step++) {
+                    run(corpus, SMALLEST << step, csv);
+                }
+            }
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    private static void run(Corpus corpus, int size, PrintStream csv) {
+        String source = corpus.generate(size);
+        long[][] samples = new long[Representation.values().length][];
+
+        for (Representation representation : Representation.values()) {
+            long[] sample = measure(representation, source);
+            sample[RETAINED_BYTES] = retainedBytesInChild(representation, corpus, size);
+            samples[representation.ordinal()] = sample;
+            csv.println(corpus + "," + representation + "," + size + "," + sample[PARSE_NANOS] + ","
+                    + sample[INTERPRET_NANOS] + "," + sample[RETAINED_BYTES] + "," + sample[NODES]);
+        }
+
+        long[] tree = samples[Representation.TREE.ordinal()];
+        long[] arena = samples[Representation.ARENA.ordinal()];
+        System.err.printf("%-17s %7d statements  arena/tree: parse %.2f  interpret %.2f  retained heap %.2f%n",
+                corpus, size,
+                (double) arena[PARSE_NANOS] / tree[PARSE_NANOS],
+                (double) arena[INTERPRET_NANOS] / tree[INTERPRET_NANOS],
+                (double) arena[RETAINED_BYTES] / tree[RETAINED_BYTES]);
+    }
+
+    /**
+     * Parses and interprets the source REPETITIONS times with one
+     * representation. Returns the fastest parse and interpret times
+     * and the number of AST nodes; the retained heap is left at 0.
+     */
+    private static long[] measure(Representation representation, String source) {
+        List<Token> tokens = new Lexer(source, new SymbolTable()).scanTokens();
+        Object ast = parse(representation, tokens);
+        long nodes = ast instanceof AstArena arena ? arena.size() : countNodes(statements(ast));
+
+        long parseNanos = Long.MAX_VALUE;
+        long interpretNanos = Long.MAX_VALUE;
+        for (int rep = 0; rep < REPETITIONS; rep++) {
+            long start = System.nanoTime();
+            ast = parse(representation, tokens);
+            parseNanos = Math.min(parseNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            if (ast instanceof AstArena arena) {
+                new ArenaInterpreter().interpret(arena);
+            } else {
+                new Interpreter().interpret(statements(ast));
+            }
+            interpretNanos = Math.min(interpretNanos, System.nanoTime() - start);
+        }
+
+        return new long[] { parseNanos, interpretNanos, 0, nodes };
+    }
+
+    /**
+     * Runs this class in a new JVM, with the same JVM options, to
+     * measure the heap retained by the AST of the corpus program
+     * with the provided number of statements.
+     */
+    private static long retainedBytesInChild(Representation representation, Corpus corpus, int size) {
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"),
+                ArenaBenchmark.class.getName(), RETAINED_HEAP, representation.name(), corpus.name(),
+                String.valueOf(size)));
+
+        try {
+            Process child = new ProcessBuilder(command)
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+            String output = new String(child.getInputStream().readAllBytes()).trim();
+            if (child.waitFor() != 0) {
+                throw new IllegalStateException("retained heap measurement failed: " + command);
+            }
+            return Long.parseLong(output);
+        } catch (IOException | InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns how much the heap grows when the source is parsed and
+     * the AST is kept. Only a static field refers to the tokens and
+     * the AST, so the JIT cannot treat them as dead early.
+     */
+    private static long retainedBytes(Representation representation, String source) {
+        reachable = new Lexer(source, new SymbolTable()).scanTokens();
+        long heapWithoutAst = usedHeap();
+        reachable = List.of(reachable, parse(representation, tokens(reachable)));
+        long heapWithAst = usedHeap();
+        reachable = null;
+        return heapWithAst - heapWithoutAst;
+    }
+
+    private static Object parse(Representation representation, List<Token> tokens) {
+        return switch (representation) {
+            case TREE -> new Parser(tokens).parse();
+            case ARENA -> new Parser(tokens).parseArena();
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Stmt> statements(Object ast) {
+        return (List<Stmt>) ast;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Token> tokens(Object tokens) {
+        return (List<Token>) tokens;
+    }
+
+    // heap in use right after a full collection, so that only live objects count
+    private static long usedHeap() {
+        System.gc();
+        return HEAP_POOLS.stream().mapToLong(pool -> pool.getCollectionUsage().getUsed()).sum();
+    }
+
+    private static long countNodes(List<Stmt> statements) {
+        long count = 0;
+        for (Stmt statement : statements) {
+            count += 1 + switch (statement) {
+                case Expression(Expr expr) -> countNodes(expr);
+                case Print(Expr expr) -> countNodes(expr);
+                case Var(Token name, Expr initializer) -> countNodes(initializer);
+            };
+        }
+        return count;
+    }
+
+    private static long countNodes(Expr expr) {
+        return 1 + switch (expr) {
+            case Binary(Expr left, Token operator, Expr right) -> countNodes(left) + countNodes(right);
+            case Grouping(Expr expression) -> countNodes(expression);
+            case Literal(Object value) -> 0;
+            case Logical(Expr left, Token operator, Expr right) -> countNodes(left) + countNodes(right);
+            case Memo(Expr expression, int slot) -> countNodes(expression);
+            case Unary(Token operator, Expr right) -> countNodes(right);
+            case Variable(Token name) -> 0;
+        };
+    }
+}
@@ -0,0 +1,65 @@
+package lox;
+
+import java.util.Arrays;
+
+// AstBuilder --> AstArena
+// Nodes are appended to the arena and referred to by index, so the
+// stack of finished expressions is just an int array.
+final class ArenaBuilder implements AstBuilder {
+    private final AstArena arena;
+    private int[] stack = new int[64];
+    private int depth = 0;
+
+    ArenaBuilder(AstArena arena) {
+        this.arena = arena;
+    }
+
+    public void binary(int operatorToken) {
+        int right = pop();
+        push(arena.binary(pop(), operatorToken, right));
+    }
+
+    public void grouping() {
+        push(arena.grouping(pop()));
+    }
+
+    public void literal(Object value) {
+        push(arena.literal(value));
+    }
+
+    public void logical(int operatorToken) {
+        int right = pop();
+        push(arena.logical(pop(), operatorToken, right));
+    }
+
+    public void unary(int operatorToken) {
+        push(arena.unary(operatorToken, pop()));
+    }
+
+    public void variable(int nameToken) {
+        push(arena.variable(nameToken));
+    }
+
+    public void print() {
+        arena.addStatement(arena.print(pop()));
+    }
+
+    public void expression() {
+        arena.addStatement(arena.expression(pop()));
+    }
+
+    public void var(int nameToken) {
+        arena.addStatement(arena.var(nameToken, pop()));
+    }
+
+    private void push(int node) {
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        stack[depth++] = node;
+    }
+
+    private int pop() {
+        return stack[--depth];
+    }
+}
@@ -0,0 +1,72 @@
+package lox;
+
+import static lox.Interpreter.binaryOperation;
+import static lox.Interpreter.isTruthy;
+import static lox.Interpreter.stringify;
+import static lox.Interpreter.symbolId;
+import static lox.Interpreter.unaryOperation;
+import static lox.TokenType.*;
+
+// AstArena --> result
+// Same semantics as Interpreter, with the same operator code, but walks
+// the arena by node index. Like ClosureCompiler, it has no ExecutionBudget.
+class ArenaInterpreter {
+    Globals globals = new Globals();
+
+    void interpret(AstArena arena) {
+        try {
+            for (int i = 0; i < arena.statementCount(); i++) {
+                execute(arena, arena.statement(i));
+            }
+        } catch (RuntimeError error) {
+            Lox.runtimeError(error);
+        }
+    }
+
+    private void execute(AstArena arena, int stmt) {
+        switch (arena.kind(stmt)) {
+            case AstArena.EXPRESSION -> evaluate(arena, arena.left(stmt));
+            case AstArena.PRINT -> {
+                Object result = evaluate(arena, arena.left(stmt));
+                System.out.println(stringify(result));
+            }
+            case AstArena.VAR -> globals.put(symbolId(arena.token(stmt)), evaluate(arena, arena.left(stmt)));
+            default -> throw new AssertionError("should be unreachable");
+        }
+    }
+
+    private Object evaluate(AstArena arena, int expr) {
+        return switch (arena.kind(expr)) {
+            case AstArena.BINARY -> evaluateBinaryExpr(arena, expr);
+            case AstArena.GROUPING -> evaluate(arena, arena.left(expr));
+            case AstArena.LITERAL -> arena.constant(expr);
+            case AstArena.LOGICAL -> evaluateLogicalExpr(arena, expr);
+            case AstArena.UNARY -> evaluateUnaryExpr(arena, expr);
+            case AstArena.VARIABLE -> globals.get(symbolId(arena.token(expr)));
+            default -> throw new AssertionError("should be unreachable");
+        };
+    }
+
+    private Object evaluateBinaryExpr(AstArena arena, int expr) {
+        Object evaluatedLeft = evaluate(arena, arena.left(expr));
+        Object evaluatedRight = evaluate(arena, arena.right(expr));
+        return binaryOperation(arena.token(expr), evaluatedLeft, evaluatedRight, Long.MAX_VALUE);
+    }
+
+    private Object evaluateLogicalExpr(AstArena arena, int expr) {
+        Object evaluatedLeft = evaluate(arena, arena.left(expr));
+        TokenType operator = arena.operator(expr);
+
+        if (operator == OR && isTruthy(evaluatedLeft)) {
+            return evaluatedLeft;
+        } else if (operator == AND && !isTruthy(evaluatedLeft)) {
+            return evaluatedLeft;
+        } else {
+            return evaluate(arena, arena.right(expr));
+        }
+    }
+
+    private Object evaluateUnaryExpr(AstArena arena, int expr) {
+        return unaryOperation(arena.token(expr), evaluate(arena, arena.left(expr)));
+    }
+}
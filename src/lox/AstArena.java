@@ -0,0 +1,194 @@
+package lox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An alternative to the Expr/Stmt records that stores the whole
+ * program in a few primitive arrays instead of one object per node.
+ * A node is just an int index; node i is described by
+ * kinds[i], lefts[i], rights[i], operators[i], and operands[i].
+ */
+final class AstArena {
+    /*
+    -2 + 3 * 2
+
+    index  kind     left  right  operator  operand
+      0    LITERAL   -1    -1      -       constants[0] = 2.0
+      1    UNARY      0    -1    MINUS     tokens[0]
+      2    LITERAL   -1    -1      -       constants[1] = 3.0
+      3    LITERAL   -1    -1      -       constants[2] = 2.0
+      4    BINARY     2     3    STAR      tokens[4]
+      5    BINARY     1     4    PLUS      tokens[2]
+     */
+
+    // node kinds (one for each Expr and Stmt record)
+    static final byte BINARY = 0;
+    static final byte GROUPING = 1;
+    static final byte LITERAL = 2;
+    static final byte LOGICAL = 3;
+    static final byte UNARY = 4;
+    static final byte VARIABLE = 5;
+    static final byte PRINT = 6;
+    static final byte EXPRESSION = 7;
+    static final byte VAR = 8;
+
+    static final int NO_NODE = -1;
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+    private byte[] kinds = new byte[INITIAL_CAPACITY];
+    private int[] lefts = new int[INITIAL_CAPACITY];     // first child, or NO_NODE
+    private int[] rights = new int[INITIAL_CAPACITY];    // second child, or NO_NODE
+    private byte[] operators = new byte[INITIAL_CAPACITY]; // TokenType ordinal
+    private int[] operands = new int[INITIAL_CAPACITY];  // index into tokens
+                                                         // (or into constants for a LITERAL)
+    private int size = 0;
+
+    private int[] statements = new int[INITIAL_CAPACITY]; // root node of each statement
+    private int statementCount = 0;
+
+    private final List<Token> tokens;
+
+    // one entry per LITERAL node; the values themselves belong to the
+    // tokens, so an entry costs just one reference
+    private final ArrayList<Object> constants = new ArrayList<>();
+
+    AstArena(List<Token> tokens) {
+        this.tokens = tokens;
+    }
+
+    // node builders; each returns the index of the new node
+
+    int binary(int left, int operatorToken, int right) {
+        return add(BINARY, left, right, operatorToken);
+    }
+
+    int grouping(int expression) {
+        return add(GROUPING, expression, NO_NODE, NO_NODE);
+    }
+
+    int literal(Object value) {
+        constants.add(value);
+        return add(LITERAL, NO_NODE, NO_NODE, constants.size() - 1);
+    }
+
+    int logical(int left, int operatorToken, int right) {
+        return add(LOGICAL, left, right, operatorToken);
+    }
+
+    int unary(int operatorToken, int expr) {
+        return add(UNARY, expr, NO_NODE, operatorToken);
+    }
+
+    int variable(int nameToken) {
+        return add(VARIABLE, NO_NODE, NO_NODE, nameToken);
+    }
+
+    int print(int expr) {
+        return add(PRINT, expr, NO_NODE, NO_NODE);
+    }
+
+    int expression(int expr) {
+        return add(EXPRESSION, expr, NO_NODE, NO_NODE);
+    }
+
+    int var(int nameToken, int initializer) {
+        return add(VAR, initializer, NO_NODE, nameToken);
+    }
+
+    void addStatement(int node) {
+        if (statementCount == statements.length) {
+            statements = Arrays.copyOf(statements, Math.max(statementCount * 2, INITIAL_CAPACITY));
+        }
+        statements[statementCount++] = node;
+    }
+
+    /**
+     * Shrinks the arrays to the number of nodes and statements,
+     * once the parser has added all of them.
+     */
+    void trimToSize() {
+        kinds = Arrays.copyOf(kinds, size);
+        lefts = Arrays.copyOf(lefts, size);
+        rights = Arrays.copyOf(rights, size);
+        operators = Arrays.copyOf(operators, size);
+        operands = Arrays.copyOf(operands, size);
+        statements = Arrays.copyOf(statements, statementCount);
+        constants.trimToSize();
+    }
+
+    // accessors used by the ArenaInterpreter
+
+    int statementCount() {
+        return statementCount;
+    }
+
+    int statement(int i) {
+        return statements[i];
+    }
+
+    int size() {
+        return size;
+    }
+
+    byte kind(int node) {
+        return kinds[node];
+    }
+
+    int left(int node) {
+        return lefts[node];
+    }
+
+    int right(int node) {
+        return rights[node];
+    }
+
+    TokenType operator(int node) {
+        return TOKEN_TYPES[operators[node]];
+    }
+
+    /**
+     * Returns the token of an operator, variable name, or var
+     * statement name. Only needed for error messages and lookups.
+     */
+    Token token(int node) {
+        return tokens.get(operands[node]);
+    }
+
+    Object constant(int node) {
+        return constants.get(operands[node]);
+    }
+
+    /**
+     * Appends a node to the arena, growing the arrays if needed.
+     * If operand points to a token, its type is stored as the
+     * node's operator so that evaluation doesn't need the Token.
+     */
+    private int add(byte kind, int left, int right, int operand) {
+        if (size == kinds.length) {
+            grow();
+        }
+
+        kinds[size] = kind;
+        lefts[size] = left;
+        rights[size] = right;
+        operands[size] = operand;
+        operators[size] = (kind == LITERAL || operand == NO_NODE)
+                ? (byte) TokenType.EOF.ordinal()
+                : (byte) tokens.get(operand).type().ordinal();
+
+        return size++;
+    }
+
+    private void grow() {
+        int capacity = Math.max(kinds.length * 2, INITIAL_CAPACITY); // may be 0 after trimToSize
+        kinds = Arrays.copyOf(kinds, capacity);
+        lefts = Arrays.copyOf(lefts, capacity);
+        rights = Arrays.copyOf(rights, capacity);
+        operators = Arrays.copyOf(operators, capacity);
+        operands = Arrays.copyOf(operands, capacity);
+    }
+}
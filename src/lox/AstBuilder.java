@@ -0,0 +1,92 @@
+package lox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Receives the nodes of a program from the Parser, which has the
+ * grammar but doesn't decide what a node is. Nodes come in postfix
+ * order: the children of a node always come before it, so a builder
+ * keeps the finished expressions on a stack until their parent comes.
+ * For example, "-2 + 3;" arrives as
+ *   literal(2.0), unary(0), literal(3.0), binary(2), expression()
+ * Tokens are passed by their index in the Parser's token list.
+ */
+interface AstBuilder {
+    void binary(int operatorToken);    // pops right, then left
+
+    void grouping();                   // pops the expression
+
+    void literal(Object value);
+
+    void logical(int operatorToken);   // pops right, then left
+
+    void unary(int operatorToken);     // pops the operand
+
+    void variable(int nameToken);
+
+    void print();                      // pops the expression
+
+    void expression();                 // pops the expression
+
+    void var(int nameToken);           // pops the initializer
+}
+
+// AstBuilder --> Expr and Stmt records
+// Each statement goes to the sink as soon as it is complete.
+final class TreeBuilder implements AstBuilder {
+    private final List<Token> tokens;
+    private final Consumer<Stmt> sink;
+    private final ArrayList<Expr> stack = new ArrayList<>();
+
+    TreeBuilder(List<Token> tokens, Consumer<Stmt> sink) {
+        this.tokens = tokens;
+        this.sink = sink;
+    }
+
+    public void binary(int operatorToken) {
+        Expr right = pop();
+        stack.add(new Binary(pop(), tokens.get(operatorToken), right));
+    }
+
+    public void grouping() {
+        stack.add(new Grouping(pop()));
+    }
+
+    public void literal(Object value) {
+        stack.add(new Literal(value));
+    }
+
+    public void logical(int operatorToken) {
+        Expr right = pop();
+        stack.add(new Logical(pop(), tokens.get(operatorToken), right));
+    }
+
+    public void unary(int operatorToken) {
+        stack.add(new Unary(tokens.get(operatorToken), pop()));
+    }
+
+    public void variable(int nameToken) {
+        stack.add(new Variable(tokens.get(nameToken)));
+    }
+
+    public void print() {
+        sink.accept(new Print(pop()));
+    }
+
+    public void expression() {
+        sink.accept(new Expression(pop()));
+    }
+
+    public void var(int nameToken) {
+        sink.accept(new Var(tokens.get(nameToken), pop()));
+    }
+
+    /**
+     * Removes and returns the most recently finished expression.
+     */
+    Expr pop() {
+        return stack.remove(stack.size() - 1);
+    }
+}
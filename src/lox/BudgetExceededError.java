@@ -0,0 +1,12 @@
+package lox;
+
+/**
+ * Thrown when a run goes over its ExecutionBudget or is cancelled.
+ * The token is the operator that went over the budget, or null
+ * if the budget ran out between nodes (time, node count, cancel).
+ */
+class BudgetExceededError extends RuntimeError {
+    BudgetExceededError(Token token, String message) {
+        super(token, message);
+    }
+}
@@ -0,0 +1,83 @@
+package lox;
+
+import java.io.IOException;
+import java.io.Reader;
+
+// input stream --> pieces of source code that each end with a complete statement
+final class ChunkedSource {
+    static final int BLOCK_SIZE = 1 << 16;
+
+    private final Reader reader;
+    private final char[] block = new char[BLOCK_SIZE];
+    private final StringBuilder pending = new StringBuilder(); // read but not yet returned
+    private int scanned = 0;           // how much of pending has been scanned
+    private int lastStatementEnd = 0;  // index just past the last top-level ';' in pending
+    private boolean inString = false;
+    private boolean inComment = false;
+
+    ChunkedSource(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Reads the input in blocks of up to BLOCK_SIZE characters and
+     * returns everything up to and including the last ';' that is
+     * not inside a string or a comment, so that no statement is cut
+     * in half. At the end of the input, returns whatever is left,
+     * and after that returns null.
+     */
+    String next() throws IOException {
+        while (true) {
+            int read = reader.read(block);
+
+            if (read == -1) { // end of input
+                if (pending.isEmpty()) {
+                    return null;
+                }
+                String rest = pending.toString();
+                pending.setLength(0);
+                scanned = 0;
+                lastStatementEnd = 0;
+                return rest;
+            }
+
+            pending.append(block, 0, read);
+            scan();
+
+            if (lastStatementEnd > 0) {
+                String chunk = pending.substring(0, lastStatementEnd);
+                pending.delete(0, lastStatementEnd);
+                scanned -= lastStatementEnd;
+                lastStatementEnd = 0;
+                return chunk;
+            }
+        }
+    }
+
+    /**
+     * Scans the newly read characters, keeping track of strings
+     * and comments, and remembers where the last statement ends.
+     */
+    private void scan() {
+        while (scanned < pending.length()) {
+            char ch = pending.charAt(scanned);
+
+            if (inComment) {
+                inComment = ch != '\n';
+            } else if (inString) {
+                inString = ch != '"';
+            } else if (ch == '"') {
+                inString = true;
+            } else if (ch == '/') {
+                if (scanned + 1 == pending.length()) {
+                    return; // can't tell whether "//" starts until more is read
+                }
+                inComment = pending.charAt(scanned + 1) == '/';
+            } else if (ch == ';') {
+                lastStatementEnd = scanned + 1;
+            }
+
+            scanned++;
+        }
+    }
+}
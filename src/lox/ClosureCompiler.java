@@ -0,0 +1,171 @@
+package lox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import static lox.Interpreter.isTruthy;
+import static lox.Interpreter.requireNumberOperand;
+import static lox.Interpreter.stringify;
+import static lox.Interpreter.symbolId;
+
+// abstract syntax tree --> tree of closures --> result
+// Same semantics as Interpreter, but the switch on each node
+// happens once, at compile time. For example, a Binary node with
+// operator STAR becomes a closure that evaluates its two children
+// and multiplies them, with nothing left to decide at run time.
+class ClosureCompiler {
+    private final Globals globals;
+
+    ClosureCompiler(Globals globals) {
+        this.globals = globals;
+    }
+
+    void interpret(List<Stmt> statements) {
+        List<Runnable> program = new ArrayList<>(statements.size());
+        for (Stmt statement : statements) {
+            program.add(compile(statement));
+        }
+
+        try {
+            for (Runnable statement : program) {
+                statement.run();
+            }
+        } catch (RuntimeError error) {
+            Lox.runtimeError(error);
+        }
+    }
+
+    Runnable compile(Stmt stmt) {
+        return switch (stmt) {
+            case Expression(Expr expr) -> {
+                CompiledExpr compiled = compile(expr);
+                yield compiled::evaluate;
+            }
+            case Print(Expr expr) -> {
+                CompiledExpr compiled = compile(expr);
+                yield () -> System.out.println(stringify(compiled.evaluate()));
+            }
+            case Var(Token name, Expr initializer) -> {
+                int id = symbolId(name);
+                CompiledExpr compiled = compile(initializer);
+                yield () -> globals.put(id, compiled.evaluate());
+            }
+        };
+    }
+
+    CompiledExpr compile(Expr expr) {
+        return switch (expr) {
+            case Binary(Expr left, Token operator, Expr right)
+                    -> compileBinaryExpr(compile(left), operator, compile(right));
+            case Grouping(Expr expression) -> compile(expression); // no node needed at run time
+            case Literal(Object value) -> () -> value;
+            case Logical(Expr left, Token operator, Expr right)
+                    -> compileLogicalExpr(compile(left), operator, compile(right));
+            case Memo(Expr expression, int slot) -> compile(expression); // not cached here
+            case Unary(Token operator, Expr right)
+                    -> compileUnaryExpr(operator, compile(right));
+            case Variable(Token name) -> {
+                int id = symbolId(name);
+                yield () -> globals.get(id);
+            }
+        };
+    }
+
+    // Each case is written out as its own lambda (rather than sharing
+    // one lambda that calls an operator function) so that every
+    // operator gets its own class, which the JIT can inline.
+    private CompiledExpr compileBinaryExpr(CompiledExpr left, Token operator, CompiledExpr right) {
+        return switch (operator.type()) {
+            case GREATER -> () -> {
+                Object l = left.evaluate();
+                Object r = right.evaluate();
+                return requireNumberOperand(operator, l) > requireNumberOperand(operator, r);
+            };
+            case GREATER_EQUAL -> () -> {
+                Object l = left.evaluate();
+                Object r = right.evaluate();
+                return requireNumberOperand(operator, l) >= requireNumberOperand(operator, r);
+            };
+            case LESS -> () -> {
+                Object l = left.evaluate();
+                Object r = right.evaluate();
+                return requireNumberOperand(operator, l) < requireNumberOperand(operator, r);
+            };
+            case LESS_EQUAL -> () -> {
+                Object l = left.evaluate();
+                Object r = right.evaluate();
+                return requireNumberOperand(operator, l) <= requireNumberOperand(operator, r);
+            };
+            case MINUS -> () -> {
+                Object l = left.evaluate();
+                Object r = right.evaluate();
+                return requireNumberOperand(operator, l) - requireNumberOperand(operator, r);
+            };
+            case SLASH -> () -> {
+                Object l = left.evaluate();
+                Object r = right.evaluate();
+                return requireNumberOperand(operator, l) / requireNumberOperand(operator, r);
+            };
+            case STAR -> () -> {
+                Object l = left.evaluate();
+                Object r = right.evaluate();
+                return requireNumberOperand(operator, l) * requireNumberOperand(operator, r);
+            };
+            case PLUS -> () -> {
+                // both numbers, or both strings
+                Object l = left.evaluate();
+                Object r = right.evaluate();
+                if (l instanceof Double d1 && r instanceof Double d2) {
+                    return d1 + d2; // numeric addition
+                } else if (l instanceof String s1 && r instanceof String s2) {
+                    return s1 + s2; // String concatenation
+                } else {
+                    throw new RuntimeError(operator, "Operands must be two numbers or two strings.");
+                }
+            };
+            case EQUAL_EQUAL -> () -> {
+                Object l = left.evaluate();
+                Object r = right.evaluate();
+                return Objects.equals(l, r);
+            };
+            case BANG_EQUAL -> () -> {
+                Object l = left.evaluate();
+                Object r = right.evaluate();
+                return !Objects.equals(l, r);
+            };
+            default -> throw new AssertionError("should be unreachable");
+        };
+    }
+
+    private CompiledExpr compileLogicalExpr(CompiledExpr left, Token operator, CompiledExpr right) {
+        return switch (operator.type()) {
+            case OR -> () -> {
+                Object l = left.evaluate();
+                return isTruthy(l) ? l : right.evaluate();
+            };
+            case AND -> () -> {
+                Object l = left.evaluate();
+                return !isTruthy(l) ? l : right.evaluate();
+            };
+            default -> throw new AssertionError("should be unreachable");
+        };
+    }
+
+    private CompiledExpr compileUnaryExpr(Token operator, CompiledExpr right) {
+        return switch (operator.type()) {
+            case BANG -> () -> !isTruthy(right.evaluate());
+            case MINUS -> () -> -requireNumberOperand(operator, right.evaluate());
+            default -> throw new AssertionError("should be unreachable");
+        };
+    }
+}
+
+/**
+ * An expression that has been compiled into a closure.
+ * Evaluating it needs no further inspection of the AST.
+ */
+@FunctionalInterface
+interface CompiledExpr {
+    Object evaluate();
+}
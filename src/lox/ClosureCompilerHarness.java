@@ -0,0 +1,302 @@
+package lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks ClosureCompiler against Interpreter, then times the two.
+ *
+ * The differential check runs each program through both and fails if
+ * their output differs in any way, runtime error messages included.
+ * The programs are:
+ *   - ScriptGenerator programs over a range of seeds and shapes
+ *   - small random programs that mix every operator with nil,
+ *     booleans, numbers, strings, and defined and undefined globals,
+ *     so that many of them end in a RuntimeError
+ *   - ERROR_CASES, written out by hand (all of them must parse)
+ *
+ * The timing runs one program of arithmetic var statements RUNS times
+ * per round with each Backend, and keeps the fastest round. TREE and
+ * TREE_BUDGETED together give the cost of enforcing a budget.
+ *
+ * Usage: java -XX:+UseSerialGC -Xms1g -Xmx1g lox.ClosureCompilerHarness [csv-file]
+ * Writes one CSV row of timings per Backend (to stdout if no file is
+ * given) and exits with status 1 if any program's output differs.
+ */
+public class ClosureCompilerHarness {
+    enum Backend {
+        TREE,             // Interpreter.interpret on every run
+        TREE_BUDGETED,    // the same, under an ExecutionBudget that never runs out
+        COMPILED,         // compiled once, then only the closures run
+        COMPILE_EACH_RUN  // ClosureCompiler.interpret on every run
+    }
+
+    private static final List<String> ERROR_CASES = List.of(
+            "print -\"a\";",
+            "print 1 + \"a\";",
+            "print \"a\" + 1;",
+            "print nil + nil;",
+            "print \"a\" < 1;",
+            "print 3 >= true;",
+            "print \"a\" * 2;",
+            "print x;",
+            "var a = 1; print a; print b; print a;",
+            "var a = a;",
+            "print false and x; print nil or \"y\"; print 1 and x;",
+            "print 1 / 0; print -1 / 0; print 0 / 0; print -0;",
+            "print 1 == 1.0; print nil == false; print \"a\" == \"a\"; print 0 != -0;",
+            "print !nil; print !0; print !\"\"; print !!true;",
+            "var s = \"ab\"; var s = s + s; print s; var s = -s;",
+            "print 1.5 * 2; print 7 / 2; print 0.1 + 0.2;"
+    );
+
+    private static final long SEED = 251;
+    private static final int GENERATED_SEEDS = 1_000;   // ScriptGenerator programs
+    private static final int MIXED_PROGRAMS = 20_000;
+    private static final long MAX_STRING_LENGTH = 1 << 16; // skip mixed programs that build longer strings
+
+    private static final String[] VARIABLES = { "a", "b", "c", "d" }; // d is never declared
+    private static final String[] OPERANDS = { "nil", "true", "false", "0", "1", "2.5", "-3", "\"\"", "\"a\"", "\"bc\"" };
+    private static final String[] BINARY_OPERATORS = {
+            " + ", " - ", " * ", " / ", " > ", " >= ", " < ", " <= ", " == ", " != ", " and ", " or "
+    };
+
+    private static final int ARITHMETIC_STATEMENTS = 2_000;
+    private static final int RUNS = 200;             // runs of the program per round
+    private static final int WARM_UPS = 5;           // rounds, not recorded
+    private static final int REPETITIONS = 5;        // keep the fastest of these rounds
+
+    public static void main(String[] args) throws FileNotFoundException {
+        PrintStream csv = args.length > 0 ? new PrintStream(args[0]) : System.out;
+        PrintStream console = System.out;
+
+        List<String> failures = new ArrayList<>();
+        try {
+            check(failures);
+            time(csv);
+        } finally {
+            System.setOut(console);
+            csv.flush();
+        }
+
+        for (String failure : failures) {
+            System.err.println("FAIL " + failure);
+        }
+        System.exit(failures.isEmpty() ? 0 : 1);
+    }
+
+    private static void check(List<String> failures) {
+        int checked = 0;
+        int skipped = 0;
+
+        for (int seed = 0; seed < GENERATED_SEEDS; seed++) {
+            ScriptGenerator.Shape shape = new ScriptGenerator.Shape(
+                    32, 1 + seed % 4, seed % 3, 0.5, 2 + seed % 16, seed % 5);
+            checkProgram(new ScriptGenerator(shape, seed).generate(), failures);
+            checked++;
+        }
+
+        Random random = new Random(SEED);
+        for (int i = 0; i < MIXED_PROGRAMS; i++) {
+            if (checkProgram(mixedProgram(random), failures)) {
+                checked++;
+            } else {
+                skipped++;
+            }
+        }
+
+        for (String source : ERROR_CASES) {
+            checkProgram(source, failures);
+            checked++;
+        }
+
+        System.err.printf("%d programs checked, %d skipped (strings too long), %d differ%n",
+                checked, skipped, failures.size());
+    }
+
+    /**
+     * Runs the source with both backends and records a failure if
+     * their output differs. Returns false if the program was skipped
+     * because it builds strings longer than MAX_STRING_LENGTH, which
+     * ClosureCompiler would build in full since it has no budget.
+     */
+    private static boolean checkProgram(String source, List<String> failures) {
+        List<Stmt> statements = new Parser(new Lexer(source, new SymbolTable()).scanTokens()).parse();
+
+        ExecutionBudget budget = new ExecutionBudget(
+                ExecutionBudget.UNLIMITED, ExecutionBudget.UNLIMITED, MAX_STRING_LENGTH);
+        String expected = output(() -> new Interpreter(budget).interpret(statements));
+        if (expected.contains("String length budget exceeded.")) {
+            return false;
+        }
+
+        String actual = output(() -> new ClosureCompiler(new Globals()).interpret(statements));
+        if (!actual.equals(expected)) {
+            failures.add(String.format("outputs differ for%n%s%n--- Interpreter%n%s--- ClosureCompiler%n%s",
+                    source, expected, actual));
+        }
+        return true;
+    }
+
+    // what the run prints, including any RuntimeError message
+    private static String output(Runnable run) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(bytes));
+        try {
+            run.run();
+        } finally {
+            System.setOut(out);
+        }
+        return bytes.toString();
+    }
+
+    /**
+     * Returns up to 12 var, print, and expression statements over
+     * VARIABLES, OPERANDS, and every operator, with no regard for
+     * types. MemoHarness checks MemoTable on these too.
+     */
+    static String mixedProgram(Random random) {
+        StringBuilder out = new StringBuilder();
+        int statements = 1 + random.nextInt(12);
+
+        for (int i = 0; i < statements; i++) {
+            switch (random.nextInt(3)) {
+                case 0 -> out.append("var ").append(VARIABLES[random.nextInt(VARIABLES.length - 1)]).append(" = ");
+                case 1 -> out.append("print ");
+                default -> {}
+            }
+            mixedExpression(random, random.nextInt(4), out);
+            out.append(";\n");
+        }
+        return out.toString();
+    }
+
+    static void mixedExpression(Random random, int depth, StringBuilder out) {
+        if (depth == 0) {
+            if (random.nextInt(3) == 0) {
+                out.append(VARIABLES[random.nextInt(VARIABLES.length)]);
+            } else {
+                out.append(OPERANDS[random.nextInt(OPERANDS.length)]);
+            }
+            return;
+        }
+
+        boolean grouped = random.nextBoolean();
+        if (grouped) {
+            out.append('(');
+        }
+
+        switch (random.nextInt(4)) {
+            case 0 -> {
+                out.append(random.nextBoolean() ? "!" : "-");
+                mixedExpression(random, depth - 1, out);
+            }
+            default -> {
+                mixedExpression(random, depth - 1, out);
+                out.append(BINARY_OPERATORS[random.nextInt(BINARY_OPERATORS.length)]);
+                mixedExpression(random, depth - 1, out);
+            }
+        }
+
+        if (grouped) {
+            out.append(')');
+        }
+    }
+
+    private static void time(PrintStream csv) {
+        List<Stmt> statements = new Parser(new Lexer(arithmeticProgram(), new SymbolTable()).scanTokens()).parse();
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // discard program output
+
+        long[] best = new long[Backend.values().length];
+        for (int round = 0; round < WARM_UPS + REPETITIONS; round++) {
+            for (Backend backend : Backend.values()) {
+                long nanos = timeRound(backend, statements);
+                if (round == WARM_UPS || round > WARM_UPS && nanos < best[backend.ordinal()]) {
+                    best[backend.ordinal()] = nanos;
+                }
+            }
+        }
+
+        csv.println("backend,statements,runs,nanos");
+        for (Backend backend : Backend.values()) {
+            csv.println(backend + "," + statements.size() + "," + RUNS + "," + best[backend.ordinal()]);
+        }
+
+        long tree = best[Backend.TREE.ordinal()];
+        System.err.printf("%d statements x %d runs: tree %.1f ms, budgeted %.1f ms (%+.1f%%), "
+                        + "compiled %.1f ms (%.2fx), compile each run %.1f ms%n",
+                statements.size(), RUNS, tree / 1e6,
+                best[Backend.TREE_BUDGETED.ordinal()] / 1e6,
+                100.0 * (best[Backend.TREE_BUDGETED.ordinal()] - tree) / tree,
+                best[Backend.COMPILED.ordinal()] / 1e6,
+                (double) tree / best[Backend.COMPILED.ordinal()],
+                best[Backend.COMPILE_EACH_RUN.ordinal()] / 1e6);
+    }
+
+    private static long timeRound(Backend backend, List<Stmt> statements) {
+        long start = System.nanoTime();
+        switch (backend) {
+            case TREE -> {
+                Interpreter interpreter = new Interpreter();
+                for (int run = 0; run < RUNS; run++) {
+                    interpreter.interpret(statements);
+                }
+            }
+            case TREE_BUDGETED -> {
+                // every check is made, but none of them fails
+                Interpreter interpreter = new Interpreter(ExecutionBudget.unlimited());
+                for (int run = 0; run < RUNS; run++) {
+                    interpreter.interpret(statements);
+                }
+            }
+            case COMPILED -> {
+                ClosureCompiler compiler = new ClosureCompiler(new Globals());
+                List<Runnable> program = new ArrayList<>(statements.size());
+                for (Stmt statement : statements) {
+                    program.add(compiler.compile(statement));
+                }
+                for (int run = 0; run < RUNS; run++) {
+                    for (Runnable statement : program) {
+                        statement.run();
+                    }
+                }
+            }
+            case COMPILE_EACH_RUN -> {
+                ClosureCompiler compiler = new ClosureCompiler(new Globals());
+                for (int run = 0; run < RUNS; run++) {
+                    compiler.interpret(statements);
+                }
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Returns ARITHMETIC_STATEMENTS statements like
+     * "var v7 = (v3 + 2) * v5 - 4 / v1;" over 64 globals, all of
+     * which are declared first.
+     */
+    private static String arithmeticProgram() {
+        Random random = new Random(SEED);
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < 64; i++) {
+            out.append("var v").append(i).append(" = ").append(i + 1).append(";\n");
+        }
+
+        String[] operators = { " + ", " - ", " * ", " / " };
+        for (int i = 0; i < ARITHMETIC_STATEMENTS; i++) {
+            out.append("var v").append(random.nextInt(64)).append(" = (v").append(random.nextInt(64))
+                    .append(operators[random.nextInt(operators.length)]).append(1 + random.nextInt(9))
+                    .append(")").append(operators[random.nextInt(operators.length)]).append('v')
+                    .append(random.nextInt(64)).append(operators[random.nextInt(operators.length)])
+                    .append(1 + random.nextInt(9)).append(";\n");
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,69 @@
+package lox;
+
+/**
+ * Limits on a single call to Interpreter.interpret, for running
+ * untrusted scripts: how many Expr nodes may be evaluated, how long
+ * the run may take, and how long a String it may build.
+ * Another thread may also call cancel() to stop the run.
+ * Exceeding any of these throws a BudgetExceededError.
+ */
+final class ExecutionBudget {
+    static final long UNLIMITED = Long.MAX_VALUE;
+
+    /**
+     * The Interpreter only looks at the clock and the cancel flag
+     * once every CHECK_INTERVAL evaluated nodes, so that the
+     * per-node cost is a single counter comparison.
+     */
+    static final int CHECK_INTERVAL = 1024;
+
+    final long maxNodes;         // evaluated Expr nodes per run
+    final long timeoutNanos;     // wall-clock time per run
+    final long maxStringLength;  // length of any String built by +
+
+    private volatile boolean cancelled = false;
+
+    /**
+     * @param maxNodes        the maximum number of Expr nodes to evaluate, or UNLIMITED
+     * @param timeoutMillis   the maximum run time in milliseconds, or UNLIMITED
+     * @param maxStringLength the maximum length of a concatenated String, or UNLIMITED
+     */
+    ExecutionBudget(long maxNodes, long timeoutMillis, long maxStringLength) {
+        this.maxNodes = maxNodes;
+        // a timeout too long to count in nanoseconds is as good as none
+        this.timeoutNanos = timeoutMillis >= UNLIMITED / 1_000_000 ? UNLIMITED : timeoutMillis * 1_000_000;
+        this.maxStringLength = maxStringLength;
+    }
+
+    /**
+     * Returns a budget with no limits, which can still be cancelled.
+     */
+    static ExecutionBudget unlimited() {
+        return new ExecutionBudget(UNLIMITED, UNLIMITED, UNLIMITED);
+    }
+
+    /**
+     * Asks the Interpreter running under this budget to stop.
+     * Safe to call from any thread; the run stops within
+     * CHECK_INTERVAL evaluated nodes. The flag stays set until the
+     * owner of the budget calls clearCancel(), so a cancel that comes
+     * before a run starts stops that run on its first node, and every
+     * later run under this budget is cancelled too.
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Lets runs under this budget go ahead again after a cancel().
+     * Only the owner of the budget should call this, once it knows
+     * the cancelled run has stopped; the Interpreter never does.
+     */
+    void clearCancel() {
+        cancelled = false;
+    }
+}
@@ -1,7 +1,7 @@
 package lox;
 
 public sealed interface Expr
-        permits Binary, Grouping, Literal, Logical, Unary, Variable {}
+        permits Binary, Grouping, Literal, Logical, Memo, Unary, Variable {}
 
 /*
 -2 + 3
@@ -22,6 +22,15 @@ record Literal(Object value) implements Expr {}
 
 record Logical(Expr left, Token operator, Expr right) implements Expr {}
 
+/**
+ * A subexpression that occurs more than once in the program and
+ * whose value is cached by the Interpreter (see MemoTable).
+ * Never produced by the Parser, only by MemoTable.optimize.
+ * @param expr the shared subexpression
+ * @param slot where its value is cached in the program's MemoTable
+ */
+record Memo(Expr expr, int slot) implements Expr {}
+
 record Unary(Token operator, Expr expr) implements Expr {}
 
 record Variable(Token name) implements Expr {}
\ No newline at end of file
@@ -0,0 +1,94 @@
+package lox;
+
+import java.util.Arrays;
+
+/**
+ * The global variable store, keyed by Symbol id instead of by name.
+ * An open-addressing hash map with primitive int keys, so a lookup
+ * neither hashes a String nor boxes the key.
+ */
+final class Globals {
+    private static final int INITIAL_CAPACITY = 64; // must be a power of 2
+    private static final int EMPTY = -1;              // ids are never negative
+
+    private int[] keys = newKeys(INITIAL_CAPACITY);
+    private Object[] values = new Object[INITIAL_CAPACITY];
+    private int count = 0;
+
+    /**
+     * Returns the value of the variable with the given id,
+     * or null if it was never defined.
+     */
+    Object get(int id) {
+        int mask = keys.length - 1;
+        int i = slot(id, mask);
+
+        while (keys[i] != EMPTY) {
+            if (keys[i] == id) {
+                return values[i];
+            }
+            i = (i + 1) & mask;
+        }
+
+        return null;
+    }
+
+    /**
+     * Defines or redefines the variable with the given id.
+     */
+    void put(int id, Object value) {
+        int mask = keys.length - 1;
+        int i = slot(id, mask);
+
+        while (keys[i] != EMPTY) {
+            if (keys[i] == id) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+
+        keys[i] = id;
+        values[i] = value;
+        count++;
+
+        if (count * 2 > keys.length) { // keep the load factor at most 1/2
+            grow();
+        }
+    }
+
+    int size() {
+        return count;
+    }
+
+    // ids are dense, so a multiplicative hash spreads neighbours apart
+    private static int slot(int id, int mask) {
+        int h = id * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static int[] newKeys(int capacity) {
+        int[] keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        return keys;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = newKeys(oldKeys.length * 2);
+        values = new Object[oldKeys.length * 2];
+        int mask = keys.length - 1;
+
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != EMPTY) {
+                int i = slot(oldKeys[j], mask);
+                while (keys[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package lox;
+
+import java.io.FileNotFoundException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measures identifier interning and global variable access with
+ * many globals, using the record-tree Interpreter. For each number
+ * of globals, generates a program that declares them and then reads
+ * them in random order, one read per statement ("g42;"), and records:
+ *   LEX        nanos per token, and the heap retained by the tokens
+ *   INTERPRET  nanos per read statement, run by the Interpreter
+ *   BY_ID      nanos per Globals.get(symbol id), the store the
+ *              Interpreter uses
+ *   BY_NAME    nanos per HashMap.get(lexeme), a name-keyed store
+ *              like the one Globals replaced
+ *
+ * Times are without garbage collection, as in StressHarness: the
+ * tokens of the larger programs take up over 100 MB, and copying
+ * them in every young collection would otherwise dominate LEX.
+ *
+ * The retained heap is only measured for the first (largest) number
+ * of globals, while nothing else has been allocated; see
+ * ArenaBenchmark for why later measurements in one JVM can be off.
+ *
+ * Usage: java -XX:+UseSerialGC -Xms2g -Xmx2g lox.GlobalsBenchmark [csv-file]
+ * Writes one CSV row per number of globals and stage (to stdout if
+ * no file is given).
+ */
+public class GlobalsBenchmark {
+    enum Stage { LEX, INTERPRET, BY_ID, BY_NAME }
+
+    private static final int[] GLOBALS = { 100_000, 10_000, 1_000 };
+    private static final int READS = 1_000_000;
+    private static final long SEED = 251;
+    private static final int REPETITIONS = 5; // keep the fastest of these
+
+    private static final List<MemoryPoolMXBean> HEAP_POOLS =
+            ManagementFactory.getMemoryPoolMXBeans().stream()
+                    .filter(pool -> pool.getType() == MemoryType.HEAP)
+                    .toList();
+
+    private static final List<GarbageCollectorMXBean> COLLECTORS =
+            ManagementFactory.getGarbageCollectorMXBeans();
+
+    private static Object reachable; // what is live while the heap is measured
+
+    public static void main(String[] args) throws FileNotFoundException {
+        PrintStream csv = args.length > 0 ? new PrintStream(args[0]) : System.out;
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // discard program output
+
+        try {
+            csv.println("globals,stage,nanos_per_op,retained_bytes");
+            boolean first = true;
+            for (int globals : GLOBALS) {
+                run(globals, first, csv);
+                first = false;
+            }
+        } finally {
+            System.setOut(console);
+            csv.flush();
+        }
+    }
+
+    private static void run(int globals, boolean measureHeap, PrintStream csv) {
+        String source = generate(globals);
+
+        String retainedBytes = ""; // only measured for the first number of globals
+        if (measureHeap) {
+            long heapWithoutTokens = usedHeap();
+            reachable = new Lexer(source, new SymbolTable()).scanTokens();
+            retainedBytes = String.valueOf(usedHeap() - heapWithoutTokens);
+            describeTokens(tokens(reachable));
+            reachable = null;
+        }
+
+        List<Token> tokens = null;
+        List<Stmt> statements = null;
+        long lexNanos = Long.MAX_VALUE;
+        long interpretNanos = Long.MAX_VALUE;
+        for (int rep = 0; rep < REPETITIONS; rep++) {
+            tokens = null;
+            statements = null;
+            System.gc(); // so that collecting the previous run isn't counted
+
+            long start = System.nanoTime() - gcNanos();
+            tokens = new Lexer(source, new SymbolTable()).scanTokens();
+            lexNanos = Math.min(lexNanos, System.nanoTime() - gcNanos() - start);
+
+            statements = new Parser(tokens).parse();
+            System.gc();
+            start = System.nanoTime() - gcNanos();
+            new Interpreter().interpret(statements);
+            interpretNanos = Math.min(interpretNanos, System.nanoTime() - gcNanos() - start);
+        }
+
+        // the names read, in program order, for the two stores on their own
+        List<Token> reads = new ArrayList<>(READS);
+        for (Stmt statement : statements.subList(globals, statements.size())) {
+            reads.add(((Variable) ((Expression) statement).expr()).name());
+        }
+
+        csv.println(globals + "," + Stage.LEX + "," + perOp(lexNanos, tokens.size()) + "," + retainedBytes);
+        csv.println(globals + "," + Stage.INTERPRET + "," + perOp(interpretNanos, statements.size()) + ",");
+        csv.println(globals + "," + Stage.BY_ID + "," + perOp(timeById(globals, reads), READS) + ",");
+        csv.println(globals + "," + Stage.BY_NAME + "," + perOp(timeByName(globals, reads), READS) + ",");
+    }
+
+    /**
+     * Returns a program that declares globals g0, g1, ... and then
+     * reads READS of them, chosen at random.
+     */
+    private static String generate(int globals) {
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < globals; i++) {
+            out.append("var g").append(i).append(" = ").append(i).append(";\n");
+        }
+
+        Random random = new Random(SEED);
+        for (int i = 0; i < READS; i++) {
+            out.append('g').append(random.nextInt(globals)).append(";\n");
+        }
+        return out.toString();
+    }
+
+    private static long timeById(int globals, List<Token> reads) {
+        Globals store = new Globals();
+        for (int id = 0; id < globals; id++) {
+            store.put(id, (double) id);
+        }
+
+        int[] ids = new int[reads.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = Interpreter.symbolId(reads.get(i));
+        }
+
+        long best = Long.MAX_VALUE;
+        for (int rep = 0; rep < REPETITIONS; rep++) {
+            long start = System.nanoTime();
+            for (int id : ids) {
+                reachable = store.get(id);
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static long timeByName(int globals, List<Token> reads) {
+        Map<String, Object> store = new HashMap<>();
+        for (int i = 0; i < globals; i++) {
+            store.put("g" + i, (double) i);
+        }
+
+        // a fresh String per occurrence, as the Lexer made before interning
+        String[] names = new String[reads.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = new String(reads.get(i).lexeme());
+        }
+
+        long best = Long.MAX_VALUE;
+        for (int rep = 0; rep < REPETITIONS; rep++) {
+            long start = System.nanoTime();
+            for (String name : names) {
+                reachable = store.get(name);
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    // reports how many identifier occurrences share each lexeme String
+    private static void describeTokens(List<Token> tokens) {
+        Map<String, Boolean> distinct = new IdentityHashMap<>();
+        int identifiers = 0;
+        for (Token token : tokens) {
+            if (token.type() == TokenType.IDENTIFIER) {
+                identifiers++;
+                distinct.put(token.lexeme(), true);
+            }
+        }
+        System.err.printf("%d tokens, %d identifiers, %d distinct identifier Strings%n",
+                tokens.size(), identifiers, distinct.size());
+    }
+
+    private static String perOp(long nanos, int operations) {
+        return String.format("%.1f", (double) nanos / operations);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Token> tokens(Object tokens) {
+        return (List<Token>) tokens;
+    }
+
+    // total time spent in garbage collection so far (only millisecond precision)
+    private static long gcNanos() {
+        return COLLECTORS.stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum() * 1_000_000;
+    }
+
+    // heap in use right after a full collection, so that only live objects count
+    private static long usedHeap() {
+        System.gc();
+        return HEAP_POOLS.stream().mapToLong(pool -> pool.getCollectionUsage().getUsed()).sum();
+    }
+}
@@ -1,8 +1,6 @@
 package lox;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 
 import static lox.TokenType.*;
@@ -18,15 +16,85 @@ class Interpreter {
 //        }
 //    }
 
-    Map<String, Object> varsMap = new HashMap<>();
+    // global variables, keyed by the id of their interned Symbol
+    Globals globals = new Globals();
+
+    // cached values of the Memo nodes in the program being run,
+    // if it was rewritten by MemoTable.optimize(); null otherwise
+    private MemoTable memos;
+
+    // null means no budget: the node counter never reaches nextBudgetCheck
+    private final ExecutionBudget budget;
+    private long nodesEvaluated;
+    private long nextBudgetCheck;
+    private long startNanos;
+    private long maxStringLength;
+
+    private boolean failed; // a RuntimeError has ended the current run
+
+    Interpreter() {
+        this(null);
+    }
+
+    /**
+     * Creates an Interpreter whose every call to interpret
+     * is limited by the provided budget.
+     */
+    Interpreter(ExecutionBudget budget) {
+        this.budget = budget;
+    }
 
     void interpret(List<Stmt> statements) {
-        try {
-            for (Stmt statement : statements) {
-                execute(statement);
+        startRun();
+
+        for (Stmt statement : statements) {
+            if (!interpret(statement)) {
+                break;
             }
+        }
+    }
+
+    /**
+     * Runs a program rewritten by MemoTable.optimize(), caching the
+     * values of its Memo nodes in the program's own table.
+     */
+    void interpret(MemoTable.Program program) {
+        memos = program.memos();
+        memos.clear();
+
+        try {
+            interpret(program.statements());
+        } finally {
+            memos = null;
+        }
+    }
+
+    /**
+     * Starts a new run: resets the budget and forgets any earlier
+     * RuntimeError. The run's statements are then passed to
+     * interpret(Stmt) one at a time, e.g. as the Parser builds them.
+     */
+    void startRun() {
+        startBudget();
+        failed = false;
+    }
+
+    /**
+     * Executes one statement of the current run, unless a RuntimeError
+     * has already ended the run. Returns whether the run is still going.
+     */
+    boolean interpret(Stmt statement) {
+        if (failed) {
+            return false;
+        }
+
+        try {
+            execute(statement);
+            return true;
         } catch (RuntimeError error) {
+            failed = true;
             Lox.runtimeError(error);
+            return false;
         }
     }
 
@@ -40,13 +108,21 @@ class Interpreter {
                 System.out.println(stringify(result));
             }
             case Var(Token name, Expr initializer) -> {
-                // store the variable name along with its value in a map
-                varsMap.put(name.lexeme(), evaluate(initializer));
+                // store the variable's value under its symbol id
+                int id = symbolId(name);
+                globals.put(id, evaluate(initializer));
+                if (memos != null) {
+                    memos.invalidate(id); // cached values that read it are now stale
+                }
             }
         }
     }
 
     private Object evaluate(Expr expr) {
+        if (++nodesEvaluated >= nextBudgetCheck) {
+            checkBudget();
+        }
+
         return switch (expr) {
             case Binary(Expr left, Token operator, Expr right)
                     -> evaluateBinaryExpr(left, operator, right);
@@ -54,16 +130,50 @@ class Interpreter {
             case Literal(Object value) -> value;
             case Logical(Expr left, Token operator, Expr right)
                     -> evaluateLogicalExpr(left, operator, right);
+            case Memo(Expr expression, int slot) -> evaluateMemo(expression, slot);
             case Unary(Token operator, Expr right)
                     -> evaluateUnaryExpr(operator, right);
-            case Variable(Token name) -> varsMap.get(name.lexeme());
+            case Variable(Token name) -> globals.get(symbolId(name));
         };
     }
 
+    // outside interpret(Program) there is no table, so nothing is cached
+    private Object evaluateMemo(Expr expression, int slot) {
+        if (memos == null) {
+            return evaluate(expression);
+        }
+        return memos.isValid(slot) ? memos.value(slot) : memos.store(slot, evaluate(expression));
+    }
+
     private Object evaluateBinaryExpr(Expr left, Token operator, Expr right) {
         Object evaluatedLeft = evaluate(left);
         Object evaluatedRight = evaluate(right);
+        return binaryOperation(operator, evaluatedLeft, evaluatedRight, maxStringLength);
+    }
+
+    private Object evaluateLogicalExpr(Expr left, Token operator, Expr right) {
+        Object evaluatedLeft = evaluate(left);
+
+        if (operator.type() == OR && isTruthy(evaluatedLeft)) {
+            return evaluatedLeft;
+        } else if (operator.type() == AND && !isTruthy(evaluatedLeft)) {
+            return evaluatedLeft;
+        } else {
+            return evaluate(right);
+        }
+    }
+
+    private Object evaluateUnaryExpr(Token operator, Expr right) {
+        return unaryOperation(operator, evaluate(right));
+    }
 
+    /**
+     * Applies a binary operator to its evaluated operands. Also used
+     * by the ArenaInterpreter, so that both agree on every result and
+     * error message.
+     */
+    static Object binaryOperation(Token operator, Object evaluatedLeft, Object evaluatedRight,
+                                  long maxStringLength) {
         return switch (operator.type()) {
             case GREATER, GREATER_EQUAL, LESS, LESS_EQUAL, MINUS, SLASH, STAR -> {
                 // only numbers in this case
@@ -86,6 +196,9 @@ class Interpreter {
                 if (evaluatedLeft instanceof Double d1 && evaluatedRight instanceof Double d2) {
                     yield d1 + d2; // numeric addition
                 } else if (evaluatedLeft instanceof String s1 && evaluatedRight instanceof String s2) {
+                    if ((long) s1.length() + s2.length() > maxStringLength) {
+                        throw new BudgetExceededError(operator, "String length budget exceeded.");
+                    }
                     yield s1 + s2; // String concatenation
                 } else {
                     throw new RuntimeError(operator, "Operands must be two numbers or two strings.");
@@ -97,29 +210,65 @@ class Interpreter {
         };
     }
 
-    private Object evaluateLogicalExpr(Expr left, Token operator, Expr right) {
-        Object evaluatedLeft = evaluate(left);
+    /**
+     * Applies a unary operator to its evaluated operand.
+     */
+    static Object unaryOperation(Token operator, Object evaluatedRight) {
+        return switch (operator.type()) {
+            case BANG -> !isTruthy(evaluatedRight);
+            case MINUS -> -requireNumberOperand(operator, evaluatedRight);
+            default -> throw new AssertionError("should be unreachable");
+        };
+    }
 
-        if (operator.type() == OR && isTruthy(evaluatedLeft)) {
-            return evaluatedLeft;
-        } else if (operator.type() == AND && !isTruthy(evaluatedLeft)) {
-            return evaluatedLeft;
+    /**
+     * Resets the node count and clock at the start of a run. The
+     * cancel flag is left alone: it belongs to the budget's owner.
+     */
+    private void startBudget() {
+        nodesEvaluated = 0;
+
+        if (budget == null) {
+            nextBudgetCheck = Long.MAX_VALUE;
+            maxStringLength = Long.MAX_VALUE;
         } else {
-            return evaluate(right);
+            nextBudgetCheck = 0; // check on the first node, in case cancel() came before the run
+            startNanos = System.nanoTime();
+            maxStringLength = budget.maxStringLength;
         }
     }
 
-    private Object evaluateUnaryExpr(Token operator, Expr right) {
-        Object evaluatedRight = evaluate(right);
+    /**
+     * Called once every CHECK_INTERVAL nodes, and on every node once
+     * the node limit has been reached. Throws a BudgetExceededError
+     * if the run has used up its budget or been cancelled, and
+     * otherwise schedules the next check.
+     */
+    private void checkBudget() {
+        if (nodesEvaluated > budget.maxNodes) {
+            throw new BudgetExceededError(null, "Node budget exceeded.");
+        }
+        if (budget.isCancelled()) {
+            throw new BudgetExceededError(null, "Execution cancelled.");
+        }
+        // elapsed time, rather than a deadline, so that nothing can
+        // overflow: nanoTime() values may only be subtracted
+        if (System.nanoTime() - startNanos > budget.timeoutNanos) {
+            throw new BudgetExceededError(null, "Time budget exceeded.");
+        }
 
-        return switch (operator.type()) {
-            case BANG -> !isTruthy(evaluatedRight);
-            case MINUS -> -requireNumberOperand(operator, evaluatedRight);
-            default -> throw new AssertionError("should be unreachable");
-        };
+        nextBudgetCheck = Math.min(nodesEvaluated + ExecutionBudget.CHECK_INTERVAL, budget.maxNodes);
+    }
+
+    /**
+     * Returns the id of the Symbol that the Lexer interned
+     * for the provided IDENTIFIER token.
+     */
+    static int symbolId(Token name) {
+        return ((Symbol) name.literal()).id();
     }
 
-    private static boolean isTruthy(Object o) {
+    static boolean isTruthy(Object o) {
         return switch (o) {
             case null -> false;
             case Boolean b -> b;
@@ -127,7 +276,7 @@ class Interpreter {
         };
     }
 
-    private static double requireNumberOperand(Token operator, Object operand) {
+    static double requireNumberOperand(Token operator, Object operand) {
         if (operand instanceof Double d) {
             return d;
         } else {
@@ -135,7 +284,7 @@ class Interpreter {
         }
     }
 
-    private String stringify(Object object) {
+    static String stringify(Object object) {
         return switch (object) {
             case null -> "nil";
             case Double d -> {
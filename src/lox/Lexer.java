@@ -2,7 +2,6 @@ package lox;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 import static lox.TokenType.*; // "static import"
 
@@ -16,19 +15,37 @@ class Lexer {
     private int start = 0;   // index of first character
                              // of current token
     private int current = 0; // index of current character in source
+    private final SymbolTable symbols;
 
-    private static final Map<String, TokenType> keywords = Map.of(
-            "and",   AND,
-            "false", FALSE,
-            "nil",   NIL,
-            "or",    OR,
-            "true",  TRUE,
-            "print", PRINT,
-            "var",   VAR
-    );
-
-    Lexer(String source) {
+    /**
+     * An error found by the Lexer, and where: the number of tokens
+     * scanned before it, which is the index of the token after it.
+     */
+    record LexError(int tokenIndex, String message) {}
+
+    // null: report each error straight away, through Lox.error
+    private List<LexError> errors = null;
+
+    /**
+     * Creates a Lexer that interns identifiers into the provided
+     * SymbolTable, so that ids stay the same across several sources
+     * (e.g., successive lines typed at the prompt). Symbol ids only
+     * mean something within one table, so every token that reaches
+     * a given Interpreter must come from Lexers sharing one table.
+     */
+    Lexer(String source, SymbolTable symbols) {
         this.source = source;
+        this.symbols = symbols;
+    }
+
+    /**
+     * Scans the tokens like scanTokens(), but adds any errors to the
+     * provided list instead of reporting them, so that the caller can
+     * report each one when it gets to that point in the tokens.
+     */
+    List<Token> scanTokens(List<LexError> errors) {
+        this.errors = errors;
+        return scanTokens();
     }
 
     List<Token> scanTokens() {
@@ -54,16 +71,8 @@ class Lexer {
             case '*' -> addToken(STAR);
             case ';' -> addToken(SEMICOLON);
 
-            // token that has exactly two characters: ==
-            case '=' -> {
-                if (match('=')) {
-                    addToken(EQUAL_EQUAL);
-                } else {
-                    Lox.error("Unexpected character.");
-                }
-            }
-
-            // tokens made of one or two characters: !, !=, <, <=, etc.
+            // tokens made of one or two characters: =, ==, !, !=, <, <=, etc.
+            case '=' -> addToken(match('=') ? EQUAL_EQUAL : EQUAL);
             case '!' -> addToken(match('=') ? BANG_EQUAL : BANG);
             case '<' -> addToken(match('=') ? LESS_EQUAL : LESS);
             case '>' -> addToken(match('=') ? GREATER_EQUAL : GREATER);
@@ -79,8 +88,9 @@ class Lexer {
                 }
             }
 
-            case ' ' -> {
-                // ignore spaces
+            case ' ', '\r', '\t', '\n' -> {
+                // ignore whitespace, including line breaks
+                // (a whole program may be lexed at once)
             }
 
             case '"' -> scanString();
@@ -91,7 +101,7 @@ class Lexer {
                 } else if (isAlpha(ch)) { // start of keyword, like nil
                     scanKeywordOrIdentifier();
                 } else { // for example, @ ~ ^
-                    Lox.error("Unexpected character.");
+                    error("Unexpected character.");
                 }
             }
         }
@@ -110,7 +120,7 @@ class Lexer {
         }
 
         if (isAtEnd()) {
-            Lox.error("Unterminated string.");
+            error("Unterminated string.");
             return;
         }
 
@@ -158,11 +168,49 @@ class Lexer {
             advance();
         }
 
-        String text = source.substring(start, current);
-        TokenType type = keywords.getOrDefault(text, IDENTIFIER);
+        TokenType type = keywordOrIdentifier();
         // text: "and"
         // type: AND
-        addToken(type);
+        if (type == IDENTIFIER) {
+            // every occurrence of a name shares one interned Symbol
+            Symbol symbol = symbols.intern(source, start, current);
+            tokens.add(new Token(IDENTIFIER, symbol.name(), symbol));
+        } else {
+            addToken(type);
+        }
+    }
+
+    /**
+     * Determines whether source[start, current) is a keyword,
+     * by switching on its first character and then comparing
+     * the length and the remaining characters.
+     * Doesn't create a String.
+     */
+    private TokenType keywordOrIdentifier() {
+        return switch (source.charAt(start)) {
+            case 'a' -> checkKeyword("and", AND);
+            case 'f' -> checkKeyword("false", FALSE);
+            case 'n' -> checkKeyword("nil", NIL);
+            case 'o' -> checkKeyword("or", OR);
+            case 'p' -> checkKeyword("print", PRINT);
+            case 't' -> checkKeyword("true", TRUE);
+            case 'v' -> checkKeyword("var", VAR);
+            default -> IDENTIFIER;
+        };
+    }
+
+    /**
+     * Returns the provided type if source[start, current) is
+     * exactly the provided keyword, and IDENTIFIER otherwise.
+     */
+    private TokenType checkKeyword(String keyword, TokenType type) {
+        int length = current - start;
+        if (length == keyword.length()
+                && source.regionMatches(start + 1, keyword, 1, length - 1)) {
+            return type;
+        } else {
+            return IDENTIFIER;
+        }
     }
 
     /**
@@ -255,6 +303,14 @@ class Lexer {
         return source.charAt(current++);
     }
 
+    private void error(String message) {
+        if (errors == null) {
+            Lox.error(message);
+        } else {
+            errors.add(new LexError(tokens.size(), message));
+        }
+    }
+
     /**
      * Adds to the list of tokens a token containing
      * the provided token type and current lexeme.
@@ -1,10 +1,27 @@
 package lox;
 
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
 
 public class Lox {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws InterruptedException {
+        if (System.console() == null) { // input is piped in, e.g. java lox.Lox < program.lox
+            if (!runPipelined(new InputStreamReader(System.in))) {
+                System.exit(1); // the front end failed; already reported
+            }
+            return;
+        }
+
         Scanner keyboardScanner = new Scanner(System.in);
         System.out.print("> "); // prompt
 
@@ -17,9 +34,10 @@ public class Lox {
     }
 
     private static final Interpreter interpreter = new Interpreter();
+    private static final SymbolTable symbols = new SymbolTable(); // shared by every line
 
     static void run(String source) {
-        Lexer lexer = new Lexer(source);
+        Lexer lexer = new Lexer(source, symbols);
         List<Token> tokens = lexer.scanTokens();
 
 //        System.out.println("Here are the tokens: ");
@@ -36,15 +54,195 @@ public class Lox {
 
         // interpreter.interpret(expr); // prints the result
 
-        List<Stmt> stmts = parser.parse();
+        // each statement runs as soon as it has been parsed
+        interpreter.startRun();
+        try {
+            parser.parse(interpreter::interpret);
+        } catch (Parser.ParseError error) {
+            // already reported; skip the rest of the line
+        }
+    }
+
+    /**
+     * Something the front-end thread hands to the interpreter thread:
+     * a parsed statement, an error message from the Lexer or Parser,
+     * or an unexpected failure of the front end itself (e.g. a
+     * StackOverflowError on thousands of nested parentheses), which
+     * ends the program. Errors travel through the same queue as
+     * statements so that they are printed in source order.
+     */
+    private record Step(Stmt statement, String error, Throwable failure) {
+        Step(Stmt statement, String error) {
+            this(statement, error, null);
+        }
+    }
+
+    private static final Step END_OF_INPUT = new Step(null, null);
+    private static final int QUEUE_CAPACITY = 1024;
+
+    // set while runPipelined is running, so that error() can queue
+    // front-end errors instead of printing them straight away
+    private static volatile BlockingQueue<Step> pipeline = null;
+
+    /**
+     * Runs a whole program read from the provided reader.
+     * A front-end thread reads the input in large blocks, lexes and
+     * parses it, and passes each statement through a bounded queue
+     * to this thread, which executes it. So the first statements
+     * run while the rest of the program is still being read.
+     * A RuntimeError ends the program, as does a syntax error
+     * (after the statements before it have run).
+     * Returns false if the front end failed, e.g. could not read the
+     * input, after reporting the failure on System.err.
+     */
+    static boolean runPipelined(Reader reader) throws InterruptedException {
+        BlockingQueue<Step> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        Thread frontEnd = new Thread(() -> lexAndParse(reader, queue), "lox-front-end");
+        frontEnd.setDaemon(true); // never keeps the JVM alive once we are done
+
+        // buffer the output and flush it whenever we have to wait for
+        // input, instead of flushing after every println
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(new BufferedOutputStream(
+                new FileOutputStream(FileDescriptor.out), ChunkedSource.BLOCK_SIZE), false));
+
+        pipeline = queue;
+        frontEnd.start();
+        interpreter.startRun();
+
+        Throwable failure = null;
+        try {
+            while (true) {
+                Step step = queue.poll();
+                if (step == null) { // nothing to do until more input is parsed
+                    System.out.flush();
+                    step = queue.take();
+                }
+
+                if (step == END_OF_INPUT) {
+                    break;
+                } else if (step.failure() != null) {
+                    failure = step.failure();
+                    break;
+                } else if (step.error() != null) {
+                    System.out.println(step.error());
+                } else if (!interpreter.interpret(step.statement())) {
+                    break; // a RuntimeError ended the program
+                }
+            }
+        } finally {
+            frontEnd.interrupt(); // in case we stopped before the end of the input
+            pipeline = null;
+            System.out.flush();
+            System.setOut(console);
+        }
+
+        if (failure != null) {
+            System.err.println("Could not read the program: " + failure);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Runs on the front-end thread: turns the input into statements
+     * and queues them, followed by END_OF_INPUT, or by a failure step
+     * if anything unexpected is thrown. Either way the interpreter
+     * thread gets a last step, so it never waits forever.
+     */
+    private static void lexAndParse(Reader reader, BlockingQueue<Step> queue) {
+        Step last = END_OF_INPUT; // null if nobody is taking steps any more
+        try {
+            ChunkedSource source = new ChunkedSource(reader);
+            String chunk;
+
+            while ((chunk = source.next()) != null) {
+                new ChunkParser(chunk, queue).parseChunk();
+            }
+        } catch (Parser.ParseError error) {
+            // already queued by error(); the program stops here
+        } catch (CancellationException e) {
+            last = null; // the interpreter thread has stopped taking steps
+        } catch (Throwable failure) { // e.g. an IOException or a StackOverflowError
+            last = new Step(null, null, failure);
+        } finally {
+            if (last != null) {
+                try {
+                    put(queue, last);
+                } catch (CancellationException e) {
+                    // the interpreter thread stopped before the end anyway
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses one chunk on the front-end thread and queues its
+     * statements. The whole chunk is lexed before any of it is
+     * parsed, so the Lexer's errors are held back, and each one is
+     * queued just before the first statement or syntax error that
+     * comes after it in the source.
+     */
+    private static final class ChunkParser extends Parser {
+        private final List<Lexer.LexError> lexErrors;
+        private final BlockingQueue<Step> queue;
+        private int queuedLexErrors = 0;
+
+        ChunkParser(String chunk, BlockingQueue<Step> queue) {
+            this(chunk, new ArrayList<>(), queue);
+        }
+
+        private ChunkParser(String chunk, List<Lexer.LexError> lexErrors, BlockingQueue<Step> queue) {
+            super(new Lexer(chunk, symbols).scanTokens(lexErrors));
+            this.lexErrors = lexErrors;
+            this.queue = queue;
+        }
+
+        void parseChunk() {
+            parse(statement -> {
+                queueLexErrors(previousIndex()); // up to the statement's ';'
+                put(queue, new Step(statement, null));
+            });
+            queueLexErrors(Integer.MAX_VALUE); // e.g. after the last ';'
+        }
 
+        @Override
+        ParseError error(String message) {
+            queueLexErrors(previousIndex() + 1); // up to the unexpected token
+            return super.error(message);
+        }
+
+        // queues the Lexer's errors from before the token at index end
+        private void queueLexErrors(int end) {
+            while (queuedLexErrors < lexErrors.size() && lexErrors.get(queuedLexErrors).tokenIndex() <= end) {
+                put(queue, new Step(null, lexErrors.get(queuedLexErrors).message()));
+                queuedLexErrors++;
+            }
+        }
+    }
+
+    /**
+     * Waits for room in the queue, then adds the step. Throws a
+     * CancellationException if the interpreter thread interrupts us.
+     */
+    private static void put(BlockingQueue<Step> queue, Step step) {
+        try {
+            queue.put(step);
+        } catch (InterruptedException e) {
+            throw new CancellationException();
+        }
     }
 
     static void error(String message) {
-        System.out.println(message);
+        BlockingQueue<Step> queue = pipeline;
+        if (queue != null) { // only the front-end thread reports these errors
+            put(queue, new Step(null, message));
+        } else {
+            System.out.println(message);
+        }
     }
 
     static void runtimeError(RuntimeError error) {
         System.out.println(error.getMessage());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,237 @@
+package lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures MemoTable on a redundancy-heavy program: STATEMENTS
+ * statements, each of which prints one of the three EXPRESSIONS,
+ * chosen at random, or stores its difference with the first one in
+ * z. k is redefined every RESET_INTERVAL statements, which
+ * invalidates the cached values of the third expression.
+ *
+ * First a differential check: each program is run as parsed and as
+ * optimized, and any difference in output, runtime error messages
+ * included, is a failure. The programs are
+ *   - the corpus above
+ *   - ClosureCompilerHarness.mixedProgram programs, which mix every
+ *     operator with values of every type and undefined globals, so
+ *     that many of them end in a RuntimeError
+ *   - repetitive programs, in which the statements reuse a few such
+ *     expressions while the globals they read are redefined, so that
+ *     cached values are reused and invalidated
+ *
+ * Then it records, fastest of REPETITIONS after WARM_UPS:
+ *   PLAIN      the time to interpret the program as parsed
+ *   OPTIMIZE   the time MemoTable.optimize() takes to rewrite it
+ *   OPTIMIZED  the time to interpret the rewritten program, and the
+ *              hit rate of its Memo lookups
+ * All of the runs share one Interpreter, and the program is optimized
+ * afresh every time, so a cache that grew with each optimize() call
+ * would show up as a growing slot count.
+ *
+ * Usage: java -XX:+UseSerialGC -Xms1g -Xmx1g lox.MemoHarness [csv-file]
+ * Writes one CSV row per Stage (to stdout if no file is given) and
+ * exits with status 1 if any optimized program prints something else.
+ */
+public class MemoHarness {
+    enum Stage { PLAIN, OPTIMIZE, OPTIMIZED }
+
+    private static final String[] EXPRESSIONS = {
+            "(x * x + y * y) / (x + y) * (1.5 * 2.5 - 0.25)",
+            "(1 + 2 * 3 - 4 / 5) * (6 + 7 * 8 - 9) / (x * y + 3 * 3)",
+            "(x * x + y * y) / (x + y) * (1.5 * 2.5 - 0.25) + k" // the first one, plus k
+    };
+
+    private static final int STATEMENTS = 20_000;
+    private static final int RESET_INTERVAL = 100;
+    private static final long SEED = 251;
+    private static final int WARM_UPS = 5;
+    private static final int REPETITIONS = 5;      // keep the fastest of these
+
+    private static final int MIXED_PROGRAMS = 20_000;       // and as many repetitive ones
+    private static final long MAX_STRING_LENGTH = 1 << 16;  // keeps s = s + s from running away
+
+    public static void main(String[] args) throws FileNotFoundException {
+        PrintStream csv = args.length > 0 ? new PrintStream(args[0]) : System.out;
+        PrintStream console = System.out;
+
+        String source = corpus();
+        List<Stmt> statements = new Parser(new Lexer(source, new SymbolTable()).scanTokens()).parse();
+        MemoTable.Program optimized = MemoTable.optimize(statements);
+
+        List<String> failures = new ArrayList<>();
+        check(source, failures);
+        if (!failures.isEmpty()) {
+            for (String failure : failures) {
+                System.err.println("FAIL " + failure);
+            }
+            System.exit(1);
+        }
+
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // discard program output
+        long[] best = { Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE };
+        double hitRate = 0;
+        int slots = optimized.memos().slotCount();
+        try {
+            Interpreter interpreter = new Interpreter();
+            for (int rep = 0; rep < WARM_UPS + REPETITIONS; rep++) {
+                long start = System.nanoTime();
+                interpreter.interpret(statements);
+                long plainNanos = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                MemoTable.Program program = MemoTable.optimize(statements);
+                long optimizeNanos = System.nanoTime() - start;
+
+                if (program.memos().slotCount() != slots) {
+                    System.err.println("FAIL optimize() allocated " + program.memos().slotCount()
+                            + " slots, not " + slots);
+                    System.exit(1);
+                }
+
+                start = System.nanoTime();
+                interpreter.interpret(program);
+                long optimizedNanos = System.nanoTime() - start;
+
+                if (rep >= WARM_UPS) {
+                    best[Stage.PLAIN.ordinal()] = Math.min(best[Stage.PLAIN.ordinal()], plainNanos);
+                    best[Stage.OPTIMIZE.ordinal()] = Math.min(best[Stage.OPTIMIZE.ordinal()], optimizeNanos);
+                    best[Stage.OPTIMIZED.ordinal()] = Math.min(best[Stage.OPTIMIZED.ordinal()], optimizedNanos);
+                    hitRate = program.memos().hitRate(); // the same on every run
+                }
+            }
+        } finally {
+            System.setOut(console);
+        }
+
+        csv.println("stage,statements,nanos,hit_rate");
+        for (Stage stage : Stage.values()) {
+            csv.println(stage + "," + STATEMENTS + "," + best[stage.ordinal()] + ","
+                    + (stage == Stage.OPTIMIZED ? String.format("%.3f", hitRate) : ""));
+        }
+        csv.flush();
+
+        System.err.printf("%d slots  hit rate %.3f  plain %.1f ms  optimized %.1f ms  optimize() %.1f ms%n",
+                slots, hitRate, best[Stage.PLAIN.ordinal()] / 1e6, best[Stage.OPTIMIZED.ordinal()] / 1e6,
+                best[Stage.OPTIMIZE.ordinal()] / 1e6);
+    }
+
+    private static void check(String corpus, List<String> failures) {
+        int checked = 0;
+        int memoised = 0; // programs with at least one Memo node
+
+        if (checkProgram(corpus, failures)) {
+            memoised++;
+        }
+        checked++;
+
+        Random random = new Random(SEED);
+        for (int i = 0; i < MIXED_PROGRAMS; i++) {
+            for (String source : List.of(ClosureCompilerHarness.mixedProgram(random), repetitiveProgram(random))) {
+                if (checkProgram(source, failures)) {
+                    memoised++;
+                }
+                checked++;
+            }
+        }
+
+        System.err.printf("%d programs checked, %d with Memo nodes, %d differ%n",
+                checked, memoised, failures.size());
+    }
+
+    /**
+     * Runs the source as parsed and as optimized, on the same budget,
+     * and records a failure if the outputs differ. Returns whether
+     * optimize() found anything to cache.
+     */
+    private static boolean checkProgram(String source, List<String> failures) {
+        List<Stmt> statements = new Parser(new Lexer(source, new SymbolTable()).scanTokens()).parse();
+        MemoTable.Program optimized = MemoTable.optimize(statements);
+
+        ExecutionBudget budget = new ExecutionBudget(
+                ExecutionBudget.UNLIMITED, ExecutionBudget.UNLIMITED, MAX_STRING_LENGTH);
+        String expected = output(() -> new Interpreter(budget).interpret(statements));
+        String actual = output(() -> new Interpreter(budget).interpret(optimized));
+        if (!actual.equals(expected)) {
+            failures.add(String.format("outputs differ for%n%s%n--- plain%n%s--- optimized%n%s",
+                    source, expected, actual));
+        }
+        return optimized.memos().slotCount() > 0;
+    }
+
+    /**
+     * Returns up to 24 statements over a pool of three mixed
+     * expressions, alone or joined by an operator, about a third of
+     * which redefine a, b, or c.
+     */
+    private static String repetitiveProgram(Random random) {
+        String[] pool = new String[3];
+        for (int i = 0; i < pool.length; i++) {
+            StringBuilder expression = new StringBuilder();
+            ClosureCompilerHarness.mixedExpression(random, 1 + random.nextInt(3), expression);
+            pool[i] = expression.toString();
+        }
+
+        String[] variables = { "a", "b", "c" };
+        String[] operators = { " + ", " * ", " == ", " and ", " or " };
+        StringBuilder out = new StringBuilder();
+        int statements = 1 + random.nextInt(24);
+
+        for (int i = 0; i < statements; i++) {
+            switch (random.nextInt(3)) {
+                case 0 -> out.append("var ").append(variables[random.nextInt(variables.length)]).append(" = ");
+                case 1 -> out.append("print ");
+                default -> {}
+            }
+            out.append(pool[random.nextInt(pool.length)]);
+            if (random.nextBoolean()) {
+                out.append(operators[random.nextInt(operators.length)]).append(pool[random.nextInt(pool.length)]);
+            }
+            out.append(";\n");
+        }
+        return out.toString();
+    }
+
+    /**
+     * Returns the program: x, y, and k declared, then STATEMENTS
+     * statements over EXPRESSIONS, with "var k = ...;" every
+     * RESET_INTERVAL.
+     */
+    private static String corpus() {
+        Random random = new Random(SEED);
+        StringBuilder out = new StringBuilder("var x = 3;\nvar y = 4;\nvar k = 1;\n");
+
+        for (int i = 0; i < STATEMENTS; i++) {
+            if (i % RESET_INTERVAL == 0) {
+                out.append("var k = ").append(i).append(";\n");
+            }
+
+            String expression = EXPRESSIONS[random.nextInt(EXPRESSIONS.length)];
+            if (random.nextBoolean()) {
+                out.append("print ").append(expression).append(";\n");
+            } else {
+                out.append("var z = ").append(expression).append(" - ").append(EXPRESSIONS[0]).append(";\n");
+            }
+        }
+        return out.toString();
+    }
+
+    // what the run prints, including any RuntimeError message
+    private static String output(Runnable run) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(bytes));
+        try {
+            run.run();
+        } finally {
+            System.setOut(out);
+        }
+        return bytes.toString();
+    }
+}
@@ -0,0 +1,329 @@
+package lox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Common-subexpression elimination and memoisation.
+ *
+ * optimize() rewrites a program so that structurally identical
+ * subexpressions become one shared node (hash-consing), and wraps
+ * each shared Binary, Logical, or Unary node that occurs more than
+ * once in a Memo. The Interpreter caches the value of a Memo the
+ * first time it is evaluated successfully, and reuses it until a
+ * Var statement redefines one of the variables it reads.
+ *
+ * Expressions in Lox have no side effects, so a cached value is
+ * always what re-evaluating would produce. Only successful results
+ * are cached, so RuntimeErrors happen exactly where they did before.
+ *
+ * Each optimized Program owns its MemoTable, whose slots are numbered
+ * from 0, so the cache goes away with the program instead of growing
+ * with every program optimized.
+ */
+final class MemoTable {
+    /**
+     * A program rewritten by optimize(), with the table that caches
+     * the values of its Memo nodes. Run it with Interpreter.interpret(Program).
+     */
+    record Program(List<Stmt> statements, MemoTable memos) {}
+
+    // hash-consing key: the children are identified by their node ids,
+    // so neither hashing nor comparing a key walks the tree
+    private record Key(Class<?> kind, TokenType operator, Object value, int left, int right) {}
+
+    private static final int NONE = -1;
+
+    // canonical nodes of the program being optimized; only needed
+    // while optimize() runs, so it lets go of them when it returns
+    private Map<Key, Integer> ids;
+    private List<Expr> nodes;                                      // by id
+    private Map<Expr, Integer> idOfNode;
+    private Map<Expr, int[]> dependencies;                         // symbol ids read
+    private int[] occurrences;                                     // by id
+    private int[] slotOfId;                                        // by id, NONE if not memoised
+
+    // cached values of this table's program, by slot
+    private Object[] values = new Object[64];
+    private boolean[] valid = new boolean[64];
+    private int slotCount = 0;
+
+    // slotsByVariable[id] are the slots that read the global with symbol id
+    private int[][] slotsByVariable = new int[64][];
+
+    long hits = 0;
+    long misses = 0;
+
+    private MemoTable() {
+    }
+
+    /**
+     * Returns the program with shared subexpressions, where those
+     * that occur more than once are wrapped in a Memo.
+     */
+    static Program optimize(List<Stmt> statements) {
+        MemoTable memos = new MemoTable();
+        return new Program(memos.rewrite(statements), memos);
+    }
+
+    private List<Stmt> rewrite(List<Stmt> statements) {
+        ids = new HashMap<>();
+        nodes = new ArrayList<>();
+        idOfNode = new IdentityHashMap<>();
+        dependencies = new IdentityHashMap<>();
+        occurrences = new int[64];
+        slotOfId = new int[64];
+
+        try {
+            return shareAndMemoise(statements);
+        } finally {
+            ids = null;
+            nodes = null;
+            idOfNode = null;
+            dependencies = null;
+            occurrences = null;
+            slotOfId = null;
+        }
+    }
+
+    private List<Stmt> shareAndMemoise(List<Stmt> statements) {
+        // first pass: hash-cons every expression and count occurrences
+        List<Stmt> shared = new ArrayList<>(statements.size());
+        for (Stmt statement : statements) {
+            shared.add(switch (statement) {
+                case Expression(Expr expr) -> new Expression(share(expr));
+                case Print(Expr expr) -> new Print(share(expr));
+                case Var(Token name, Expr initializer) -> new Var(name, share(initializer));
+            });
+        }
+
+        // second pass: wrap the repeated ones in a Memo
+        Map<Expr, Expr> memoised = new IdentityHashMap<>();
+        List<Stmt> optimized = new ArrayList<>(shared.size());
+        for (Stmt statement : shared) {
+            optimized.add(switch (statement) {
+                case Expression(Expr expr) -> new Expression(memoise(expr, memoised));
+                case Print(Expr expr) -> new Print(memoise(expr, memoised));
+                case Var(Token name, Expr initializer) -> new Var(name, memoise(initializer, memoised));
+            });
+        }
+
+        return optimized;
+    }
+
+    // used by the Interpreter
+
+    /**
+     * Forgets every cached value. Called at the start of each run,
+     * since the globals may have changed since the last one.
+     */
+    void clear() {
+        Arrays.fill(values, 0, slotCount, null);
+        Arrays.fill(valid, 0, slotCount, false);
+    }
+
+    int slotCount() {
+        return slotCount;
+    }
+
+    boolean isValid(int slot) {
+        return valid[slot];
+    }
+
+    Object value(int slot) {
+        hits++;
+        return values[slot];
+    }
+
+    Object store(int slot, Object value) {
+        misses++;
+        values[slot] = value;
+        valid[slot] = true;
+        return value;
+    }
+
+    /**
+     * Forgets the cached values that read the global with the
+     * provided symbol id. Called whenever a Var statement runs.
+     */
+    void invalidate(int symbolId) {
+        if (symbolId < slotsByVariable.length && slotsByVariable[symbolId] != null) {
+            for (int slot : slotsByVariable[symbolId]) {
+                valid[slot] = false;
+                values[slot] = null;
+            }
+        }
+    }
+
+    double hitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Returns the canonical node for expr, creating it (and its
+     * children) if no identical expression has been seen before.
+     * Groupings are dropped; they don't change the value.
+     */
+    private Expr share(Expr expr) {
+        return switch (expr) {
+            case Binary(Expr left, Token operator, Expr right) -> {
+                Expr l = share(left);
+                Expr r = share(right);
+                yield canonical(new Key(Binary.class, operator.type(), null, idOf(l), idOf(r)),
+                        () -> new Binary(l, operator, r));
+            }
+            case Grouping(Expr expression) -> share(expression);
+            case Literal(Object value)
+                    -> canonical(new Key(Literal.class, null, value, NONE, NONE), () -> expr);
+            case Logical(Expr left, Token operator, Expr right) -> {
+                Expr l = share(left);
+                Expr r = share(right);
+                yield canonical(new Key(Logical.class, operator.type(), null, idOf(l), idOf(r)),
+                        () -> new Logical(l, operator, r));
+            }
+            case Memo(Expr inner, int slot) -> share(inner); // already optimized once
+            case Unary(Token operator, Expr right) -> {
+                Expr r = share(right);
+                yield canonical(new Key(Unary.class, operator.type(), null, idOf(r), NONE),
+                        () -> new Unary(operator, r));
+            }
+            case Variable(Token name)
+                    -> canonical(new Key(Variable.class, null, Interpreter.symbolId(name), NONE, NONE),
+                        () -> expr);
+        };
+    }
+
+    private Expr canonical(Key key, Supplier<Expr> create) {
+        Integer id = ids.get(key);
+
+        if (id == null) {
+            id = nodes.size();
+            Expr node = create.get();
+            ids.put(key, id);
+            nodes.add(node);
+            idOfNode.put(node, id);
+
+            if (id == occurrences.length) {
+                occurrences = Arrays.copyOf(occurrences, id * 2);
+                slotOfId = Arrays.copyOf(slotOfId, id * 2);
+            }
+            slotOfId[id] = NONE;
+        }
+
+        occurrences[id]++;
+        return nodes.get(id);
+    }
+
+    private int idOf(Expr canonicalNode) {
+        return idOfNode.get(canonicalNode);
+    }
+
+    /**
+     * Rebuilds a canonical node, wrapping each repeated Binary,
+     * Logical, or Unary node in a Memo. Shared nodes are rebuilt once.
+     */
+    private Expr memoise(Expr expr, Map<Expr, Expr> memoised) {
+        Expr done = memoised.get(expr);
+        if (done != null) {
+            return done;
+        }
+
+        int id = idOf(expr);
+        Expr rebuilt = switch (expr) {
+            case Binary(Expr left, Token operator, Expr right)
+                    -> new Binary(memoise(left, memoised), operator, memoise(right, memoised));
+            case Logical(Expr left, Token operator, Expr right)
+                    -> new Logical(memoise(left, memoised), operator, memoise(right, memoised));
+            case Unary(Token operator, Expr right)
+                    -> new Unary(operator, memoise(right, memoised));
+            default -> expr; // Literal or Variable: nothing to gain from caching
+        };
+
+        if (rebuilt != expr && occurrences[id] > 1) {
+            rebuilt = new Memo(rebuilt, slotFor(id, expr));
+        }
+
+        memoised.put(expr, rebuilt);
+        return rebuilt;
+    }
+
+    /**
+     * Returns the cache slot of the canonical node with the provided
+     * id, allocating it and registering its dependencies if needed.
+     */
+    private int slotFor(int id, Expr expr) {
+        if (slotOfId[id] != NONE) {
+            return slotOfId[id];
+        }
+
+        int slot = slotCount++;
+        slotOfId[id] = slot;
+
+        if (slot == values.length) {
+            values = Arrays.copyOf(values, slot * 2);
+            valid = Arrays.copyOf(valid, slot * 2);
+        }
+
+        for (int symbolId : dependencies(expr)) {
+            if (symbolId >= slotsByVariable.length) {
+                slotsByVariable = Arrays.copyOf(slotsByVariable,
+                        Math.max(symbolId + 1, slotsByVariable.length * 2));
+            }
+            int[] slots = slotsByVariable[symbolId];
+            slots = slots == null ? new int[1] : Arrays.copyOf(slots, slots.length + 1);
+            slots[slots.length - 1] = slot;
+            slotsByVariable[symbolId] = slots;
+        }
+
+        return slot;
+    }
+
+    /**
+     * Returns the sorted symbol ids of the globals that a canonical
+     * node reads, including in branches that may be short-circuited.
+     */
+    private int[] dependencies(Expr expr) {
+        int[] known = dependencies.get(expr);
+        if (known != null) {
+            return known;
+        }
+
+        int[] result = switch (expr) {
+            case Binary(Expr left, Token operator, Expr right) -> union(dependencies(left), dependencies(right));
+            case Logical(Expr left, Token operator, Expr right) -> union(dependencies(left), dependencies(right));
+            case Unary(Token operator, Expr right) -> dependencies(right);
+            case Variable(Token name) -> new int[] { Interpreter.symbolId(name) };
+            default -> new int[0];
+        };
+
+        dependencies.put(expr, result);
+        return result;
+    }
+
+    // merges two sorted arrays of ids, dropping duplicates
+    private static int[] union(int[] a, int[] b) {
+        int[] result = new int[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+
+        while (i < a.length || j < b.length) {
+            int next;
+            if (j == b.length || (i < a.length && a[i] < b[j])) {
+                next = a[i++];
+            } else if (i == a.length || b[j] < a[i]) {
+                next = b[j++];
+            } else { // equal
+                next = a[i++];
+                j++;
+            }
+            result[n++] = next;
+        }
+
+        return Arrays.copyOf(result, n);
+    }
+}
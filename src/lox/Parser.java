@@ -2,16 +2,20 @@ package lox;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static lox.TokenType.*;
 
 // list of tokens --> abstract syntax tree
+// The grammar is written once, here; an AstBuilder decides what the
+// nodes are: Expr/Stmt records (TreeBuilder) or an AstArena (ArenaBuilder).
 class Parser {
-    private static class ParseError extends RuntimeException {
+    static class ParseError extends RuntimeException {
     }
 
     private final List<Token> tokens;
     private int current = 0; // index of current token
+    private AstBuilder builder;
 
     Parser(List<Token> tokens) {
         this.tokens = tokens;
@@ -19,40 +23,83 @@ class Parser {
 
     List<Stmt> parse() {
         List<Stmt> statements = new ArrayList<>();
+        parse(statements::add);
+        return statements;
+    }
+
+    /**
+     * Parses statements one at a time, handing each one to the
+     * provided sink as soon as it is complete, instead of
+     * collecting all of them first.
+     */
+    void parse(Consumer<Stmt> sink) {
+        parse(new TreeBuilder(tokens, sink));
+    }
+
+    /**
+     * Parses the whole program into an AstArena instead of records.
+     */
+    AstArena parseArena() {
+        AstArena arena = new AstArena(tokens);
+        parse(new ArenaBuilder(arena));
+        arena.trimToSize();
+        return arena;
+    }
 
+    private void parse(AstBuilder builder) {
+        this.builder = builder;
         while (!isAtEnd()) {
-            statements.add(statement());
+            declaration();
         }
-
-        return statements;
     }
 
     private boolean isAtEnd() {
         return peek().type() == EOF;
     }
 
-    private Stmt statement() {
+    // declaration    →  varDecl | statement
+    private void declaration() {
+        if (match(VAR))
+            varDeclaration();
+        else
+            statement();
+    }
+
+    // varDecl        →  "var" IDENTIFIER "=" expression ";"
+    private void varDeclaration() {
+        consume(IDENTIFIER, "Expect variable name.");
+        int name = previousIndex();
+        consume(EQUAL, "Expect '=' after variable name.");
+        expression();
+        consume(SEMICOLON, "Expect ';' after variable declaration.");
+        builder.var(name);
+    }
+
+    private void statement() {
         if (match(PRINT))
-            return printStatement();
+            printStatement();
         else
-            return expressionStatement();
+            expressionStatement();
     }
 
-    private Stmt printStatement() {
-        Expr expr = expression();
+    private void printStatement() {
+        expression();
         consume(SEMICOLON, "Expect ';' after value.");
-        return new Print(expr);
+        builder.print();
     }
 
-    private Stmt expressionStatement() {
-        Expr expr = expression();
+    private void expressionStatement() {
+        expression();
         consume(SEMICOLON, "Expect ';' after expression.");
-        return new Expression(expr);
+        builder.expression();
     }
 
     Expr parseExpression() {
+        TreeBuilder tree = new TreeBuilder(tokens, statement -> {});
+        builder = tree;
         try {
-            return expression();
+            expression();
+            return tree.pop();
         } catch (ParseError e) {
             return null;
         }
@@ -60,116 +107,106 @@ class Parser {
 
 
     // expression  →  logic_or
-    private Expr expression() {
-        return or();
+    private void expression() {
+        or();
     }
 
     // logic_or    →  logic_and ( "or" logic_and )*
-    private Expr or() {
-        Expr expr = and();
+    private void or() {
+        and();
 
         while (match(OR)) {
-            Token operator = previous(); // OR
-            Expr right = and();
-            expr = new Logical(expr, operator, right);
+            int operator = previousIndex(); // OR
+            and();
+            builder.logical(operator);
         }
-
-        return expr;
     }
 
     // logic_and   →  equality ( "and" equality )*
-    private Expr and() {
-        Expr expr = equality();
+    private void and() {
+        equality();
 
         while (match(AND)) {
-            Token operator = previous(); // AND
-            Expr right = equality();
-            expr = new Logical(expr, operator, right);
+            int operator = previousIndex(); // AND
+            equality();
+            builder.logical(operator);
         }
-
-        return expr;
     }
 
     // equality    →  comparison ( ( "!=" | "==" ) comparison )*
-    private Expr equality() {
-        Expr expr = comparison();
+    private void equality() {
+        comparison();
 
         while (match(BANG_EQUAL, EQUAL_EQUAL)) {
-            Token operator = previous(); // BANG_EQUAL or EQUAL_EQUAL
-            Expr right = comparison();
-            expr = new Binary(expr, operator, right);
+            int operator = previousIndex(); // BANG_EQUAL or EQUAL_EQUAL
+            comparison();
+            builder.binary(operator);
         }
-
-        return expr;
     }
 
     // comparison → term ( ( ">" | ">=" | "<" | "<=" ) term )*
-    private Expr comparison() {
-        Expr expr = term();
+    private void comparison() {
+        term();
 
         while (match(GREATER, GREATER_EQUAL, LESS, LESS_EQUAL)) {
-            Token operator = previous();
-            Expr right = term();
-            expr = new Binary(expr, operator, right);
+            int operator = previousIndex();
+            term();
+            builder.binary(operator);
         }
-
-        return expr;
     }
 
     // term        →  factor ( ( "-" | "+" ) factor )*
-    private Expr term() {
-        Expr expr = factor();
+    private void term() {
+        factor();
 
         while (match(MINUS, PLUS)) {
-            Token operator = previous();
-            Expr right = factor();
-            expr = new Binary(expr, operator, right);
+            int operator = previousIndex();
+            factor();
+            builder.binary(operator);
         }
-
-        return expr;
     }
 
     // factor → unary ( ( "/" | "*" ) unary )* ;
-    private Expr factor() {
-        Expr expr = unary();
+    private void factor() {
+        unary();
 
         while (match(SLASH, STAR)) {
-            Token operator = previous();
-            Expr right = unary();
-            expr = new Binary(expr, operator, right);
+            int operator = previousIndex();
+            unary();
+            builder.binary(operator);
         }
-
-        return expr;
     }
 
     // unary       →  ( "!" | "-" ) unary
     //               | primary
-    private Expr unary() {
+    private void unary() {
         if (match(BANG, MINUS)) {
-            Token operator = previous();
-            Expr right = unary();
-            return new Unary(operator, right);
+            int operator = previousIndex();
+            unary();
+            builder.unary(operator);
         } else {
-            return primary();
+            primary();
         }
     }
 
     // primary     →  "true" | "false" | "nil"
-    //               | NUMBER | STRING
+    //               | NUMBER | STRING | IDENTIFIER
     //               | "(" expression ")"
-    private Expr primary() {
+    private void primary() {
         if (match(FALSE)) {
-            return new Literal(false);
+            builder.literal(false);
         } else if (match(TRUE)) {
-            return new Literal(true);
+            builder.literal(true);
         } else if (match(NIL)) {
-            return new Literal(null);
+            builder.literal(null);
         } else if (match(NUMBER, STRING)) {
-            return new Literal(previous().literal());
+            builder.literal(previous().literal());
+        } else if (match(IDENTIFIER)) {
+            builder.variable(previousIndex());
         } else if (match(LEFT_PAREN)) {
-            Expr expr = expression();
+            expression();
             consume(RIGHT_PAREN, "Expect ')' after expression.");
-            return new Grouping(expr);
+            builder.grouping();
         } else {
             throw error("Expect expression.");
         }
@@ -234,6 +271,13 @@ class Parser {
         return tokens.get(current - 1);
     }
 
+    /**
+     * Returns the index of the most recently consumed token.
+     */
+    int previousIndex() {
+        return current - 1;
+    }
+
     /**
      * Checks to see if the current token is of the given type.
      * If so, consumes the token and returns it.
@@ -250,7 +294,7 @@ class Parser {
     /**
      * Reports an error and returns a ParseError.
      */
-    private ParseError error(String message) {
+    ParseError error(String message) {
         Lox.error(message);
         return new ParseError();
     }
@@ -0,0 +1,138 @@
+package lox;
+
+import java.util.Random;
+
+// seeded shape --> a valid Lox program, for stress testing
+// The programs never hit a RuntimeError: numbers are only combined
+// with numbers and strings with strings, so every statement runs.
+final class ScriptGenerator {
+    /**
+     * The size and shape of a generated program.
+     * @param statements     number of statements after the declarations
+     * @param width          operands per level of an expression,
+     *                       e.g. "n1 + 2 * n3" has width 3
+     * @param depth          how many parentheses each expression nests
+     * @param literalDensity probability that an operand is a literal
+     *                       rather than a variable
+     * @param identifiers    number of distinct globals (at least 2);
+     *                       half hold numbers and half hold strings
+     * @param stringLength   length of each string literal
+     */
+    record Shape(int statements, int width, int depth, double literalDensity,
+                 int identifiers, int stringLength) {}
+
+    private static final String[] NUMBER_OPERATORS = { " + ", " - ", " * ", " / " };
+
+    private final Shape shape;
+    private final Random random;
+    private final int numberGlobals;
+    private final int stringGlobals;
+    private final StringBuilder out = new StringBuilder();
+
+    ScriptGenerator(Shape shape, long seed) {
+        this.shape = shape;
+        this.random = new Random(seed);
+        this.numberGlobals = (shape.identifiers() + 1) / 2;
+        this.stringGlobals = Math.max(1, shape.identifiers() / 2);
+    }
+
+    String generate() {
+        // declare every global first, so that every read finds a value
+        for (int i = 0; i < numberGlobals; i++) {
+            out.append("var n").append(i).append(" = ").append(i).append(";\n");
+        }
+        for (int i = 0; i < stringGlobals; i++) {
+            out.append("var s").append(i).append(" = ");
+            stringLiteral();
+            out.append(";\n");
+        }
+
+        for (int i = 0; i < shape.statements(); i++) {
+            statement();
+        }
+
+        return out.toString();
+    }
+
+    private void statement() {
+        switch (random.nextInt(4)) {
+            case 0 -> {
+                out.append("print ");
+                numberExpression(shape.depth());
+            }
+            case 1 -> {
+                // only number globals are redefined, so strings never grow
+                out.append("var n").append(random.nextInt(numberGlobals)).append(" = ");
+                numberExpression(shape.depth());
+            }
+            case 2 -> {
+                out.append("print ");
+                stringExpression(shape.depth());
+            }
+            default -> {
+                numberExpression(shape.depth());
+                out.append(" < ");
+                numberExpression(0);
+                out.append(random.nextBoolean() ? " or " : " and ");
+                out.append("!nil");
+            }
+        }
+        out.append(";\n");
+    }
+
+    /**
+     * Appends width operands joined by arithmetic operators.
+     * If depth > 0, the first operand is a parenthesised expression
+     * of depth - 1, so the nesting grows linearly, not exponentially.
+     */
+    private void numberExpression(int depth) {
+        for (int i = 0; i < shape.width(); i++) {
+            if (i > 0) {
+                out.append(NUMBER_OPERATORS[random.nextInt(NUMBER_OPERATORS.length)]);
+            }
+
+            if (i == 0 && depth > 0) {
+                out.append('(');
+                numberExpression(depth - 1);
+                out.append(')');
+            } else if (random.nextDouble() < shape.literalDensity()) {
+                out.append(random.nextInt(100));
+            } else {
+                if (random.nextInt(8) == 0) {
+                    out.append('-');
+                }
+                out.append('n').append(random.nextInt(numberGlobals));
+            }
+        }
+    }
+
+    /**
+     * Appends a concatenation chain of width operands, nested
+     * the same way as numberExpression.
+     */
+    private void stringExpression(int depth) {
+        for (int i = 0; i < shape.width(); i++) {
+            if (i > 0) {
+                out.append(" + ");
+            }
+
+            if (i == 0 && depth > 0) {
+                out.append('(');
+                stringExpression(depth - 1);
+                out.append(')');
+            } else if (random.nextDouble() < shape.literalDensity()) {
+                stringLiteral();
+            } else {
+                out.append('s').append(random.nextInt(stringGlobals));
+            }
+        }
+    }
+
+    private void stringLiteral() {
+        out.append('"');
+        for (int i = 0; i < shape.stringLength(); i++) {
+            out.append((char) ('a' + random.nextInt(26)));
+        }
+        out.append('"');
+    }
+}
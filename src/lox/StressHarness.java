@@ -0,0 +1,259 @@
+package lox;
+
+import java.io.FileNotFoundException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Runs the Lexer, Parser, and Interpreter over generated programs of
+ * increasing size, recording the time and peak heap of each stage.
+ * For each stage, fits the growth exponents k in time ~ size^k and
+ * peak heap ~ size^k, and fails if either is above linear (k = 1) by
+ * more than its tolerance. Stages that a scenario lists as known to
+ * be quadratic are reported as XFAIL instead, or as XPASS if they no
+ * longer look quadratic; they only fail if they grow faster still.
+ *
+ * The peak heap includes garbage that has not been collected yet, as
+ * well as what the earlier stages keep live (the source, the tokens),
+ * so it usually grows more slowly than the size. Unlike the time it
+ * is not disturbed by the JIT or the scheduler, so its tolerance is
+ * smaller; the check is there to catch a stage that keeps much more
+ * than it should.
+ *
+ * The bounds are checked against time spent outside garbage collection,
+ * since GC cost depends on the heap settings: with a small young
+ * generation, copying a growing list of live tokens alone makes the
+ * Lexer look super-linear. GC time is still recorded in the CSV.
+ *
+ * Usage: java -Xms2g -Xmx2g lox.StressHarness [csv-file]
+ * Writes one CSV row per scenario, size, and stage (to stdout if no
+ * file is given) and exits with status 1 if any bound is exceeded.
+ */
+public class StressHarness {
+    enum Stage { LEX, PARSE, INTERPRET }
+
+    /**
+     * One dimension of the program shape to scale up.
+     * @param name     used in the CSV and in failure messages
+     * @param shape    the program shape for a given size
+     * @param smallest the first size; each later size doubles it
+     * @param steps    how many sizes to run
+     * @param knownQuadratic the stages expected to fail the linear bounds
+     */
+    private record Scenario(String name, IntFunction<ScriptGenerator.Shape> shape,
+                            int smallest, int steps, Stage... knownQuadratic) {}
+
+    // Each + copies the whole string built so far, so evaluating a long
+    // or deeply nested concatenation chain is quadratic. That is a bug
+    // to fix, not a bound to meet, so the depth and width scenarios list
+    // INTERPRET as known to be quadratic, and it is reported as XFAIL
+    // until it is fixed.
+    //
+    // The identifiers scenario grows the number of distinct globals with
+    // the program. Once the SymbolTable and Globals outgrow the 2 MiB L2
+    // cache, at about 16384 globals, each lookup gets slower
+    // (GlobalsBenchmark measures about 4x the time per token for LEX at
+    // 10^5 globals as at 10^3), and a power law fitted across that step
+    // says nothing about the algorithm. So its sizes stop at 4096, well
+    // short of that, so that every size runs in the same cache regime
+    // and linear is the bound.
+    private static final List<Scenario> SCENARIOS = List.of(
+            new Scenario("statements", n -> new ScriptGenerator.Shape(n, 4, 2, 0.5, 64, 8),
+                    1 << 12, 5),
+            new Scenario("depth", n -> new ScriptGenerator.Shape(64, 2, n, 0.5, 16, 8),
+                    1 << 6, 5, Stage.INTERPRET),
+            new Scenario("width", n -> new ScriptGenerator.Shape(16, n, 1, 0.5, 16, 8),
+                    1 << 8, 5, Stage.INTERPRET),
+            new Scenario("identifiers", n -> new ScriptGenerator.Shape(n, 2, 1, 0.5, n, 8),
+                    1 << 8, 5)
+    );
+
+    private static final double LINEAR = 1;
+    private static final double QUADRATIC = 2;
+    private static final double TIME_TOLERANCE = 0.3;  // timing noise allowed on top of a bound
+    private static final double HEAP_TOLERANCE = 0.15; // the same for the peak heap
+
+    private static final long SEED = 251;
+    private static final int WARM_UPS = 5;          // runs at the smallest size, not recorded
+    private static final int REPETITIONS = 5;       // keep the fastest of these
+    private static final long STACK_SIZE = 1L << 29; // for deeply nested expressions
+
+    private static final List<MemoryPoolMXBean> HEAP_POOLS =
+            ManagementFactory.getMemoryPoolMXBeans().stream()
+                    .filter(pool -> pool.getType() == MemoryType.HEAP)
+                    .toList();
+    private static final List<GarbageCollectorMXBean> COLLECTORS =
+            ManagementFactory.getGarbageCollectorMXBeans();
+
+    // indexes into a sample
+    private static final int NANOS = 0;
+    private static final int GC_NANOS = 1;
+    private static final int PEAK_HEAP = 2;
+
+    public static void main(String[] args) throws FileNotFoundException, InterruptedException {
+        PrintStream csv = args.length > 0 ? new PrintStream(args[0]) : System.out;
+        List<String> failures = new ArrayList<>();
+        List<String> expectedFailures = new ArrayList<>();
+
+        // the recursive-descent Parser and the Interpreter recurse once
+        // per nesting level, so run everything on a thread with a big stack
+        Thread runner = new Thread(null, () -> runAll(csv, failures, expectedFailures), "stress", STACK_SIZE);
+        runner.start();
+        runner.join();
+        csv.flush();
+
+        for (String expected : expectedFailures) {
+            System.err.println(expected);
+        }
+        for (String failure : failures) {
+            System.err.println("FAIL " + failure);
+        }
+        System.exit(failures.isEmpty() ? 0 : 1);
+    }
+
+    private static void runAll(PrintStream csv, List<String> failures, List<String> expectedFailures) {
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // discard program output
+
+        try {
+            csv.println("scenario,size,stage,nanos,gc_nanos,peak_heap_bytes");
+            for (Scenario scenario : SCENARIOS) {
+                run(scenario, csv, failures, expectedFailures);
+            }
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    private static void run(Scenario scenario, PrintStream csv,
+                            List<String> failures, List<String> expectedFailures) {
+        int stages = Stage.values().length;
+        double[] logSizes = new double[scenario.steps()];
+        double[][] logTimes = new double[stages][scenario.steps()];
+        double[][] logHeaps = new double[stages][scenario.steps()];
+
+        for (int i = 0; i < WARM_UPS; i++) {
+            measure(scenario.shape().apply(scenario.smallest())); // warm up the JIT
+        }
+
+        for (int step = 0; step < scenario.steps(); step++) {
+            int size = scenario.smallest() << step;
+            long[][] samples = measure(scenario.shape().apply(size));
+
+            logSizes[step] = Math.log(size);
+            for (Stage stage : Stage.values()) {
+                long[] sample = samples[stage.ordinal()];
+                logTimes[stage.ordinal()][step] = Math.log(Math.max(sample[NANOS] - sample[GC_NANOS], 1));
+                logHeaps[stage.ordinal()][step] = Math.log(Math.max(sample[PEAK_HEAP], 1));
+                csv.println(scenario.name() + "," + size + "," + stage + ","
+                        + sample[NANOS] + "," + sample[GC_NANOS] + "," + sample[PEAK_HEAP]);
+            }
+        }
+
+        for (Stage stage : Stage.values()) {
+            double exponent = slope(logSizes, logTimes[stage.ordinal()]);
+            double heapExponent = slope(logSizes, logHeaps[stage.ordinal()]);
+            boolean linear = exponent <= LINEAR + TIME_TOLERANCE && heapExponent <= LINEAR + HEAP_TOLERANCE;
+            boolean knownQuadratic = List.of(scenario.knownQuadratic()).contains(stage);
+            System.err.printf("%-12s %-10s growth exponent %.2f, peak heap %.2f%s%n",
+                    scenario.name(), stage, exponent, heapExponent,
+                    knownQuadratic ? (linear ? "  XPASS" : "  XFAIL") : "");
+
+            // a known-quadratic stage is tracked, and only fails if it gets worse
+            double bound = knownQuadratic ? QUADRATIC : LINEAR;
+            if (knownQuadratic && !linear) {
+                expectedFailures.add(String.format("XFAIL %s/%s grows as size^%.2f, peak heap as size^%.2f",
+                        scenario.name(), stage, exponent, heapExponent));
+            } else if (knownQuadratic) {
+                expectedFailures.add(String.format("XPASS %s/%s is no longer quadratic: size^%.2f, peak heap "
+                        + "size^%.2f", scenario.name(), stage, exponent, heapExponent));
+            }
+            if (exponent > bound + TIME_TOLERANCE) {
+                failures.add(String.format("%s/%s grows as size^%.2f, bound is %.1f",
+                        scenario.name(), stage, exponent, bound));
+            }
+            if (heapExponent > bound + HEAP_TOLERANCE) {
+                failures.add(String.format("%s/%s peak heap grows as size^%.2f, bound is %.1f",
+                        scenario.name(), stage, heapExponent, bound));
+            }
+        }
+    }
+
+    /**
+     * Generates one program and runs each stage over it REPETITIONS
+     * times. Returns, by Stage, the run with the least non-GC time
+     * as {nanos, GC nanos, peak heap}.
+     */
+    private static long[][] measure(ScriptGenerator.Shape shape) {
+        String source = new ScriptGenerator(shape, SEED).generate();
+        long[][] samples = new long[Stage.values().length][];
+
+        for (int rep = 0; rep < REPETITIONS; rep++) {
+            long[] start = startSample();
+            List<Token> tokens = new Lexer(source, new SymbolTable()).scanTokens();
+            keepBest(samples, Stage.LEX, finishSample(start));
+
+            start = startSample();
+            List<Stmt> statements = new Parser(tokens).parse();
+            keepBest(samples, Stage.PARSE, finishSample(start));
+
+            start = startSample();
+            new Interpreter().interpret(statements);
+            keepBest(samples, Stage.INTERPRET, finishSample(start));
+        }
+
+        return samples;
+    }
+
+    /**
+     * Returns the clock and GC time at the start of a stage.
+     */
+    private static long[] startSample() {
+        System.gc(); // so that garbage from the previous stage isn't counted
+        HEAP_POOLS.forEach(MemoryPoolMXBean::resetPeakUsage);
+        return new long[] { System.nanoTime(), gcNanos() };
+    }
+
+    private static long[] finishSample(long[] start) {
+        long nanos = System.nanoTime() - start[0];
+        long gcNanos = gcNanos() - start[1];
+        long peakHeap = HEAP_POOLS.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+        return new long[] { nanos, gcNanos, peakHeap };
+    }
+
+    private static void keepBest(long[][] samples, Stage stage, long[] sample) {
+        long[] best = samples[stage.ordinal()];
+        if (best == null || sample[NANOS] - sample[GC_NANOS] < best[NANOS] - best[GC_NANOS]) {
+            samples[stage.ordinal()] = sample;
+        }
+    }
+
+    // total time spent in garbage collection so far (only millisecond precision)
+    private static long gcNanos() {
+        return COLLECTORS.stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum() * 1_000_000;
+    }
+
+    // least-squares slope of y against x
+    private static double slope(double[] x, double[] y) {
+        double meanX = 0, meanY = 0;
+        for (int i = 0; i < x.length; i++) {
+            meanX += x[i] / x.length;
+            meanY += y[i] / y.length;
+        }
+
+        double covariance = 0, variance = 0;
+        for (int i = 0; i < x.length; i++) {
+            covariance += (x[i] - meanX) * (y[i] - meanY);
+            variance += (x[i] - meanX) * (x[i] - meanX);
+        }
+
+        return covariance / variance;
+    }
+}
@@ -0,0 +1,110 @@
+package lox;
+
+/**
+ * Interns identifiers while the Lexer scans them, so that every
+ * occurrence of the same name shares one String and one Symbol.
+ * Each new name gets the next dense integer id (0, 1, 2, ...),
+ * which the Interpreter uses instead of hashing the name again.
+ */
+final class SymbolTable {
+    private static final int INITIAL_CAPACITY = 64; // must be a power of 2
+    private static final int PREFIX_CHARS = 8;      // one byte each, in a long
+
+    // open addressing with linear probing. Slot i is described by
+    //   keys[2 * i]      the name's hash << 32 | its length, 0 if free
+    //   keys[2 * i + 1]  the name's first PREFIX_CHARS chars, one byte
+    //                    each (identifiers are ASCII), zero-padded
+    // so a probe compares 16 bytes in one array, and reads the Symbol
+    // in slots[i] only once they match; the rest of the name, past the
+    // prefix, is then compared with the Symbol's String.
+    private long[] keys = new long[INITIAL_CAPACITY * 2];
+    private Symbol[] slots = new Symbol[INITIAL_CAPACITY];
+    private int count = 0;
+
+    /**
+     * Returns the symbol for source[start, end), creating it
+     * if this is the first time the name has been seen.
+     * Only a new name allocates a String.
+     */
+    Symbol intern(String source, int start, int end) {
+        int length = end - start;
+        int hash = 0;
+        long prefix = 0;
+        for (int k = 0; k < length; k++) {
+            char ch = source.charAt(start + k);
+            hash = 31 * hash + ch; // String.hashCode() over the range
+            if (k < PREFIX_CHARS) {
+                prefix |= (long) ch << (8 * k);
+            }
+        }
+        hash = mix(hash);
+
+        long head = (long) hash << 32 | length; // never 0: names aren't empty
+        int mask = slots.length - 1;
+        int i = hash & mask;
+
+        while (keys[2 * i] != 0) {
+            if (keys[2 * i] == head && keys[2 * i + 1] == prefix) {
+                Symbol symbol = slots[i];
+                if (length <= PREFIX_CHARS || source.regionMatches(start + PREFIX_CHARS,
+                        symbol.name(), PREFIX_CHARS, length - PREFIX_CHARS)) {
+                    return symbol;
+                }
+            }
+            i = (i + 1) & mask;
+        }
+
+        Symbol symbol = new Symbol(source.substring(start, end), count++);
+        keys[2 * i] = head;
+        keys[2 * i + 1] = prefix;
+        slots[i] = symbol;
+
+        if (count * 2 > slots.length) { // keep the load factor at most 1/2
+            grow();
+        }
+
+        return symbol;
+    }
+
+    /**
+     * Returns the number of distinct names interned so far,
+     * which is also the next id to be handed out.
+     */
+    int size() {
+        return count;
+    }
+
+    // names like g1, g2, g3 have consecutive String hashes, which would
+    // otherwise fill runs of neighbouring slots and make probe sequences long
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        Symbol[] oldSlots = slots;
+        keys = new long[oldKeys.length * 2];
+        slots = new Symbol[oldSlots.length * 2];
+        int mask = slots.length - 1;
+
+        for (int j = 0; j < oldSlots.length; j++) {
+            if (oldSlots[j] != null) {
+                int i = (int) (oldKeys[2 * j] >>> 32) & mask;
+                while (slots[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[2 * i] = oldKeys[2 * j];
+                keys[2 * i + 1] = oldKeys[2 * j + 1];
+                slots[i] = oldSlots[j];
+            }
+        }
+    }
+}
+
+/**
+ * An interned identifier.
+ * @param name the identifier as written in the source, such as "a"
+ * @param id   a dense integer unique to this name within its SymbolTable
+ */
+record Symbol(String name, int id) {}
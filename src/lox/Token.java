@@ -6,5 +6,6 @@ package lox;
  * @param literal The value of the token, if applicable.
  *                For example, PLUS doesn't have a value,
  *                but a NUMBER does.
+ *                For an IDENTIFIER, it is the interned Symbol.
  */
 record Token(TokenType type, String lexeme, Object literal) {}
\ No newline at end of file
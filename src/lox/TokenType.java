@@ -8,10 +8,8 @@ enum TokenType {
     LEFT_PAREN, RIGHT_PAREN, MINUS, PLUS, SLASH, STAR,
     SEMICOLON,
 
-    // Two-character tokens
-    EQUAL_EQUAL,
-
     // One or two character tokens.
+    EQUAL, EQUAL_EQUAL, // =, ==
     BANG, BANG_EQUAL, // !, !=
     GREATER, GREATER_EQUAL,
     LESS, LESS_EQUAL,